@@ -3,21 +3,36 @@ package app;
 import app.db.Db;
 import app.user.*;
 import app.geo.NominatimGeocoder;
+import app.geo.CoalescingGeocoder;
 import app.geo.Geocoder;
+import app.route.CoalescingRouter;
+import app.route.LegRouter;
 import app.route.OsrmClient;
 import app.route.RouteLayer;
-import app.route.StopPlanner;
 import app.route.StopsLayer;
 import app.route.StopsLayer.StopPoint;
+import app.route.TripPlanner;
+import app.session.SessionStore;
+import app.track.Fix;
+import app.track.PositionSource;
+import app.track.ReplaySource;
+import app.track.RouteTracker;
 import app.ui.StopListPane;
 
+import app.osm.CoalescingPoiSource;
 import app.osm.OverpassClient;
+import app.osm.PoiPack;
+import app.osm.PoiSource;
+import app.osm.RestrictionIndex;
 
 import com.gluonhq.maps.MapView;
 import com.gluonhq.maps.MapLayer;
 import com.gluonhq.maps.MapPoint;
 
+import javafx.animation.KeyFrame;
+import javafx.animation.Timeline;
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Point2D;
 import javafx.geometry.Pos;
@@ -26,9 +41,12 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.scene.paint.Color;
 import javafx.scene.shape.Circle;
+import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import javafx.util.Duration;
 
+import java.nio.file.Path;
 import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,8 +54,10 @@ import java.util.List;
 /** Minimal MyWay app (JavaFX + Gluon Maps + OSRM + Overpass + DuckDB). */
 public class Main extends Application {
   // DB
+  private static final String DB_FILE = "myway.duckdb";
   private Connection conn;
   private CarDao carDao;
+  private RestrictionIndex restrictions;
 
   // Map & layers
   private MapView mapView;
@@ -48,29 +68,47 @@ public class Main extends Application {
 
   // UI bits
   private Label routeInfo;
+  private Button trackButton;
 
   // State
   private MapPoint start = new MapPoint(38.9047, -77.0164); // DC-ish fallback
   private MapPoint dest  = null;
-
-  // Reusable clients
-  private final Geocoder geocoder = new NominatimGeocoder();
+  private TripPlanner.Plan plan;
+  private List<String> timeLabels = List.of();
+  private MapPoint center = start;
+  private volatile CarProfile vehicle; // last saved or picked in the vehicle dialog
+  private final RouteTracker tracker = new RouteTracker(new RouteTracker.Listener() {
+    @Override public void onProgress(RouteTracker.Progress p) { onTrackProgress(p); }
+    @Override public void onOffRoute(Fix fix, int stopsPassed) { onTrackOffRoute(fix, stopsPassed); }
+  });
+  private volatile PositionSource tracking;
+
+  // Reusable clients; identical concurrent requests share one upstream call
+  private final Geocoder geocoder = new CoalescingGeocoder(new NominatimGeocoder());
   private final OsrmClient osrm   = new OsrmClient();
+  private final LegRouter legs    = new LegRouter(new CoalescingRouter(osrm)); // cached legs, spliced per re-plan
   private final OverpassClient overpass = new OverpassClient();
+  private final PoiSource pois = openPoiSource(overpass);
+  private final TripPlanner planner = new TripPlanner(geocoder, legs, pois);
+  private final SessionStore session = SessionStore.beside(DB_FILE);
 
   public static void main(String[] args){ launch(args); }
 
   @Override public void start(Stage stage) throws Exception {
     // DB
-    conn = Db.openFile("myway.duckdb");
+    conn = Db.openFile(DB_FILE);
     Db.migrate(conn);
     carDao = new CarDao(conn);
+    restrictions = new RestrictionIndex(Db.duplicate(conn), overpass); // checked off the FX thread
+    var cars = carDao.list();
+    if (!cars.isEmpty()) vehicle = cars.get(cars.size() - 1);
 
     // Top bar UI
     TextField destField = new TextField(); destField.setPromptText("Destination address…");
     Label startLbl = new Label("Current location");
     routeInfo = new Label(""); routeInfo.setStyle("-fx-text-fill:#334155; -fx-font-size:12px;");
     Button go = new Button("Go");
+    Button track = trackButton = new Button("Track");
     Button user = new Button("👤");
     user.setOnAction(e -> openVehicleDialog(stage));
 
@@ -85,7 +123,7 @@ public class Main extends Application {
     // Map & layers
     mapView = new MapView();
     mapView.setZoom(12);
-    mapView.setCenter(start);
+    centerOn(start);
 
     routeLayer  = new RouteLayer();
     pointsLayer = new PointsLayer();
@@ -101,13 +139,13 @@ public class Main extends Application {
     stopList = new StopListPane();
     stopList.setCollapsed(true);
     stopList.setOnSelect(sp -> {
-      mapView.setCenter(sp.p);
+      centerOn(sp.p);
       routeInfo.setText("Stop: " + sp.label);
     });
 
     // Stop marker clicks also update the status and center
     stopsLayer.setOnClick(sp -> {
-      mapView.setCenter(sp.p);
+      centerOn(sp.p);
       routeInfo.setText("Stop: " + sp.label);
     });
 
@@ -115,7 +153,7 @@ public class Main extends Application {
     Button toggleStops = new Button("Stops");
     toggleStops.setOnAction(e -> stopList.setCollapsed(stopList.isVisible())); // toggle
 
-    HBox status = new HBox(8, routeInfo, toggleStops);
+    HBox status = new HBox(8, routeInfo, toggleStops, track);
     status.setAlignment(Pos.CENTER_LEFT);
     status.setPadding(new Insets(0,8,8,8));
 
@@ -128,82 +166,228 @@ public class Main extends Application {
     stage.setScene(scene);
     stage.show();
 
+    // Warm restart: paint the last session before any network call, then revalidate in the background
+    restoreSession();
+    Timeline autosave = new Timeline(new KeyFrame(Duration.seconds(60), e -> saveSession()));
+    autosave.setCycleCount(Timeline.INDEFINITE);
+    autosave.play();
+
     // GO button → geocode → plan stops → reroute via stops → render
     go.setOnAction(evt -> {
       String q = destField.getText();
       if (q == null || q.isBlank()) return;
 
-      try {
-        // 1) geocode destination
-        var p = geocoder.geocode(q);
-        dest = new MapPoint(p.lat(), p.lon());
-        mapView.setCenter(dest);
-        mapView.setZoom(12);
-
-        // 2) initial OSRM route (no stops) to measure timings
-        var base = osrm.route(start.getLatitude(), start.getLongitude(), dest.getLatitude(), dest.getLongitude());
-        double baseKm  = base.distanceM()/1000.0;
-        double baseHrs = base.durationS()/3600.0;
-
-        // 3) choose stop targets ~ every 3h ±15m on the base route
-        double[] cum = base.cumulativeSeconds();
-        var idxs = StopPlanner.planStopsByTime(cum, 3.0, 15.0);
-
-        // 4) for each target, pick a practical POI near that point (expand radius if needed)
-        List<StopPoint> stops = new ArrayList<>();
-        for (int idx : idxs) {
-          double[] ll = base.coords().get(idx); // [lat,lon] on the base route
-          var cands = overpass.findNearbyStops(ll[0], ll[1], 2500, 5);
-          if (cands.isEmpty()) cands = overpass.findNearbyStops(ll[0], ll[1], 5000, 5);
-          if (!cands.isEmpty()) {
-            var s = cands.get(0);
-            stops.add(new StopPoint(new MapPoint(s.lat(), s.lon()), s.name() + " (" + s.kind() + ")"));
-          } else {
-						stops.add(new StopPoint(new MapPoint(ll[0], ll[1]), "Planned stop"));
-					}
+      // 1-5) geocode, base route, timed stops, POI pick, via route (only changed legs hit OSRM);
+      // off the FX thread, with each stop listed as soon as it is picked
+      double sLat = start.getLatitude(), sLon = start.getLongitude();
+      stopList.clear();
+      stopList.setCollapsed(false);
+      routeInfo.setText("Planning…");
+      Thread t = new Thread(() -> {
+        try {
+          var p = planner.plan(sLat, sLon, q, s -> stopList.addStop(
+              new StopPoint(new MapPoint(s.lat(), s.lon()), s.label()), String.format("~%.1fh", s.etaS() / 3600.0)));
+          Platform.runLater(() -> {
+            dest = new MapPoint(p.destLat(), p.destLon());
+            centerOn(dest);
+            mapView.setZoom(12);
+            showPlan(p, null);
+          });
+        } catch (Exception ex) {
+          Platform.runLater(() -> {
+            routeInfo.setText("");
+            new Alert(Alert.AlertType.ERROR, "Routing failed: " + ex.getMessage()).showAndWait();
+          });
         }
+      }, "myway-plan");
+      t.setDaemon(true);
+      t.start();
+    });
 
-        // 5) re-route VIA the chosen stops so the line passes through them
-        List<double[]> waypoints = new ArrayList<>();
-        waypoints.add(new double[]{ start.getLatitude(), start.getLongitude() });
-        for (StopPoint sp : stops) waypoints.add(new double[]{ sp.p.getLatitude(), sp.p.getLongitude() });
-        waypoints.add(new double[]{ dest.getLatitude(), dest.getLongitude() });
-
-        var withStops = (waypoints.size() > 2) ? osrm.routeVia(waypoints) : base;
-
-        // 6) draw route polyline
-        List<MapPoint> path = new ArrayList<>(withStops.coords().size());
-        for (double[] ll2 : withStops.coords()) path.add(new MapPoint(ll2[0], ll2[1]));
-        routeLayer.setPath(path);
-
-        // 7) markers (start/dest)
-        List<MapPoint> pts = new ArrayList<>();
-        pts.add(start);
-        pts.add(dest);
-        pointsLayer.setPoints(pts);
-
-        // 8) stop markers + sidebar list with when (~hour mark from base timings)
-        stopsLayer.setStops(stops);
-        List<String> timeLabels = new ArrayList<>();
-        for (int i=0;i<stops.size();i++) {
-          int idx = idxs.get(i);
-          double h = cum[idx] / 3600.0;
-          timeLabels.add(String.format("~%.1fh", h));
-        }
-        stopList.setStops(stops, timeLabels);
-        stopList.setCollapsed(false);
+    // Track button → replay a GPX/CSV position log along the current route
+    track.setOnAction(evt -> {
+      if (tracking != null) { tracking.close(); tracking = null; track.setText("Track"); return; }
+      if (plan == null) { routeInfo.setText("Plan a route first"); return; }
+      FileChooser fc = new FileChooser();
+      fc.setTitle("Replay positions");
+      fc.getExtensionFilters().add(new FileChooser.ExtensionFilter("GPX / CSV", "*.gpx", "*.csv"));
+      var file = fc.showOpenDialog(stage);
+      if (file == null) return;
+      try {
+        startTracking(ReplaySource.open(file.toPath(), Double.parseDouble(System.getProperty("myway.replaySpeed", "10"))));
+        track.setText("Stop");
+      } catch (Exception ex) {
+        new Alert(Alert.AlertType.ERROR, "Replay failed: " + ex.getMessage()).showAndWait();
+      }
+    });
+  }
+
+  @Override public void stop() {
+    saveSession();
+    try { if (restrictions != null) restrictions.close(); } catch (Exception ignored) {}
+  }
+
+  private void centerOn(MapPoint p) {
+    center = p;
+    mapView.setCenter(p);
+  }
 
-        // 9) status line
-        double showKm  = withStops.distanceM()/1000.0;
-        double showHrs = withStops.durationS()/3600.0;
-        routeInfo.setText(String.format("Route: %.1f km · ~%.1f h · %d stop(s)", showKm, showHrs, stops.size()));
+  private void saveSession() {
+    try {
+      session.save(new SessionStore.Session(System.currentTimeMillis(),
+          center.getLatitude(), center.getLongitude(), mapView.getZoom(),
+          start.getLatitude(), start.getLongitude(), plan, timeLabels));
+    } catch (Exception ex) {
+      System.err.println("[SESSION] save failed: " + ex.getMessage());
+    }
+  }
 
+  private void restoreSession() {
+    var s = session.load();
+    if (s == null) return;
+    start = new MapPoint(s.startLat(), s.startLon());
+    centerOn(new MapPoint(s.centerLat(), s.centerLon()));
+    mapView.setZoom(s.zoom());
+    pointsLayer.setPoints(List.of(start));
+    if (s.plan() == null) return;
+
+    dest = new MapPoint(s.plan().destLat(), s.plan().destLon());
+    showPlan(s.plan(), s.timeLabels());
+    routeInfo.setText("Restored · " + routeInfo.getText());
+
+    // revalidate against the live services; keep the snapshot if that fails
+    double sLat = start.getLatitude(), sLon = start.getLongitude();
+    Thread t = new Thread(() -> {
+      try {
+        var fresh = planner.plan(sLat, sLon, dest.getLatitude(), dest.getLongitude());
+        Platform.runLater(() -> { if (plan == s.plan()) showPlan(fresh, null); });
       } catch (Exception ex) {
-        new Alert(Alert.AlertType.ERROR, "Routing failed: " + ex.getMessage()).showAndWait();
+        Platform.runLater(() -> routeInfo.setText("Offline · showing saved route"));
       }
+    }, "myway-revalidate");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /** Draw a plan: route line, start/dest markers, stop markers + sidebar, status line. */
+  private void showPlan(TripPlanner.Plan p, List<String> labels) {
+    plan = p;
+    var withStops = p.route();
+
+    List<StopPoint> stops = new ArrayList<>(p.stops().size());
+    for (var s : p.stops()) stops.add(new StopPoint(new MapPoint(s.lat(), s.lon()), s.label()));
+
+    // route polyline
+    List<MapPoint> path = new ArrayList<>(withStops.size());
+    for (int i = 0; i < withStops.size(); i++) path.add(new MapPoint(withStops.lats()[i], withStops.lons()[i]));
+    routeLayer.setPath(path);
+
+    // markers (start/dest)
+    List<MapPoint> pts = new ArrayList<>();
+    pts.add(start);
+    pts.add(dest);
+    pointsLayer.setPoints(pts);
+
+    // stop markers + sidebar list with when (~hour mark from base timings)
+    stopsLayer.setStops(stops);
+    if (labels == null) {
+      labels = new ArrayList<>();
+      for (var s : p.stops()) labels.add(String.format("~%.1fh", s.etaS() / 3600.0));
+    }
+    timeLabels = List.copyOf(labels);
+    stopList.setStops(stops, timeLabels);
+    stopList.setCollapsed(false);
+
+    // status line
+    double showKm  = withStops.distanceM()/1000.0;
+    double showHrs = withStops.durationS()/3600.0;
+    routeInfo.setText(String.format("Route: %.1f km · ~%.1f h · %d stop(s)", showKm, showHrs, stops.size()));
+
+    tracker.setRoute(withStops, p.stopPoints());
+    checkRestrictions(p);
+  }
+
+  /** Check the plan against the vehicle's height/weight in the background; warn in the status line. */
+  private void checkRestrictions(TripPlanner.Plan p) {
+    var car = vehicle;
+    if (car == null || restrictions == null) return;
+    Thread t = new Thread(() -> {
+      try {
+        var v = restrictions.validate(p.route(), car);
+        if (v.isEmpty()) return;
+        var first = v.get(0);
+        String msg = String.format(" · ⚠ %d restriction(s) for %s, first: %s near %.5f, %.5f (way %d)",
+            v.size(), car.nickname(), first.reason(), first.lat(), first.lon(), first.wayId());
+        Platform.runLater(() -> { if (plan == p) routeInfo.setText(routeInfo.getText() + msg); });
+      } catch (Exception ex) {
+        System.err.println("[RESTRICTIONS] check failed: " + ex.getMessage());
+      }
+    }, "myway-restrictions");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /** Follow a position source on a background thread; off-route fixes trigger a re-plan from there. */
+  private void startTracking(PositionSource src) {
+    tracking = src;
+    Thread t = new Thread(() -> {
+      try { tracker.follow(src); } catch (Exception ex) {
+        Platform.runLater(() -> routeInfo.setText("Tracking stopped: " + ex.getMessage()));
+      } finally {
+        // replay finished or failed: re-arm the button unless a newer source already replaced this one
+        Platform.runLater(() -> {
+          if (tracking != src) return;
+          tracking = null;
+          trackButton.setText("Track");
+        });
+      }
+    }, "myway-tracking");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  private void onTrackProgress(RouteTracker.Progress pr) {
+    Platform.runLater(() -> {
+      start = new MapPoint(pr.snappedLat(), pr.snappedLon());
+      pointsLayer.setPoints(dest == null ? List.of(start) : List.of(start, dest));
+      String next = "";
+      for (double eta : pr.stopEtaS()) if (eta > 0) { next = String.format(" · next stop ~%.0f min", eta / 60.0); break; }
+      routeInfo.setText(String.format("%.1f km left · ~%.1f h%s", pr.remainingM()/1000.0, pr.remainingS()/3600.0, next));
     });
   }
 
+  private void onTrackOffRoute(Fix fix, int stopsPassed) {
+    var current = plan;
+    if (current == null) return;
+    Thread t = new Thread(() -> {
+      try {
+        // only the leg from here to the next stop is new; later legs come from the leg cache
+        var next = planner.replanFrom(current, fix.lat(), fix.lon(), stopsPassed);
+        Platform.runLater(() -> {
+          start = new MapPoint(fix.lat(), fix.lon());
+          showPlan(next, null);
+          routeInfo.setText("Re-routed · " + routeInfo.getText());
+        });
+      } catch (Exception ex) {
+        Platform.runLater(() -> routeInfo.setText("Off route; re-plan failed: " + ex.getMessage()));
+      }
+    }, "myway-replan");
+    t.setDaemon(true);
+    t.start();
+  }
+
+  /** -Dmyway.poipack=path answers stop lookups from a local tile pack instead of Overpass. */
+  private static PoiSource openPoiSource(OverpassClient fallback) {
+    String pack = System.getProperty("myway.poipack");
+    if (pack == null || pack.isBlank()) return new CoalescingPoiSource(fallback);
+    try {
+      return PoiPack.open(Path.of(pack));
+    } catch (Exception ex) {
+      System.err.println("[POI] cannot open pack " + pack + ": " + ex.getMessage() + " (using Overpass)");
+      return new CoalescingPoiSource(fallback);
+    }
+  }
+
   private static Region styled(Region r){
     r.setStyle("-fx-background-color: rgba(255,255,255,0.95); -fx-background-radius:14; -fx-effect: dropshadow(gaussian, rgba(0,0,0,0.15), 12, 0, 0, 2);");
     if (r instanceof HBox h) { h.setAlignment(Pos.CENTER_LEFT); h.setPadding(new Insets(6)); }
@@ -227,7 +411,9 @@ public class Main extends Application {
         Integer y = year.getText().isBlank()?null:Integer.parseInt(year.getText().trim());
         Double h  = height.getText().isBlank()?null:Double.parseDouble(height.getText().trim());
         Double w  = weight.getText().isBlank()?null:Double.parseDouble(weight.getText().trim());
-        carDao.insert(new CarProfile(0, nick.getText(), make.getText(), model.getText(), y, h, w));
+        var car = new CarProfile(0, nick.getText(), make.getText(), model.getText(), y, h, w);
+        vehicle = new CarProfile(carDao.insert(car), car.nickname(), car.make(), car.model(), y, h, w);
+        if (plan != null) checkRestrictions(plan);
         d.close();
       } catch (Exception ex) {
         new Alert(Alert.AlertType.ERROR, "Save failed: " + ex.getMessage()).showAndWait();
@@ -235,9 +421,19 @@ public class Main extends Application {
     });
 
     ListView<String> list = new ListView<>();
+    List<CarProfile> cars = new ArrayList<>();
     try {
-      carDao.list().forEach(c -> list.getItems().add(c.nickname()+" · "+c.make()+" "+c.model()));
+      cars.addAll(carDao.list());
+      cars.forEach(c -> list.getItems().add(c.nickname()+" · "+c.make()+" "+c.model()));
     } catch (Exception ignored) {}
+    // picking a vehicle makes it the one routes are checked against
+    var cur = vehicle;
+    for (int i = 0; i < cars.size(); i++) if (cur != null && cars.get(i).id() == cur.id()) list.getSelectionModel().select(i);
+    list.getSelectionModel().selectedIndexProperty().addListener((o, a, i) -> {
+      if (i.intValue() < 0 || i.intValue() >= cars.size()) return;
+      vehicle = cars.get(i.intValue());
+      if (plan != null) checkRestrictions(plan);
+    });
 
     GridPane form = new GridPane();
     form.setHgap(8); form.setVgap(8); form.setPadding(new Insets(8));
@@ -1,5 +1,7 @@
 package app.db;
 
+import org.duckdb.DuckDBConnection;
+
 import java.sql.*;
 
 public final class Db {
@@ -8,6 +10,10 @@ public final class Db {
     Class.forName("org.duckdb.DuckDBDriver");
     return DriverManager.getConnection("jdbc:duckdb:" + path);
   }
+  /** Second connection to the same database, for use from another thread (JDBC connections are not shared). */
+  public static Connection duplicate(Connection c) throws SQLException {
+    return c.unwrap(DuckDBConnection.class).duplicate();
+  }
   public static void migrate(Connection c) throws Exception {
     try (Statement s = c.createStatement()) {
       s.execute("""
@@ -21,6 +27,29 @@ public final class Db {
           weight_kg  DOUBLE
         )
       """);
+      // OSM vehicle restrictions (app.osm.RestrictionIndex); geometry is polyline6
+      s.execute("""
+        CREATE TABLE IF NOT EXISTS restriction_ways(
+          way_id        BIGINT PRIMARY KEY,
+          max_height_m  DOUBLE,
+          max_weight_kg DOUBLE,
+          hgv           TEXT,
+          geometry      TEXT
+        )
+      """);
+      s.execute("""
+        CREATE TABLE IF NOT EXISTS restriction_way_cells(
+          cell    BIGINT,
+          way_id  BIGINT,
+          PRIMARY KEY(cell, way_id)
+        )
+      """);
+      s.execute("""
+        CREATE TABLE IF NOT EXISTS restriction_cells(
+          cell        BIGINT PRIMARY KEY,
+          fetched_at  TIMESTAMP
+        )
+      """);
     }
   }
 }
@@ -0,0 +1,75 @@
+package app.geo;
+
+import app.geo.Geocoder.Result;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Geocodes a whole address list: inputs are normalized and deduplicated, requests are paced by a
+ * {@link TokenBucket} and run on a small pool, and one {@link Result} per input is streamed back
+ * in completion order (duplicates share the single lookup).
+ */
+public final class BulkGeocoder {
+  private final Geocoder geocoder;
+  private final double perSecond;
+  private final int burst, concurrency;
+
+  /** perSecond <= 0 disables pacing (local endpoints). */
+  public BulkGeocoder(Geocoder geocoder, double perSecond, int burst, int concurrency) {
+    this.geocoder = geocoder; this.perSecond = perSecond;
+    this.burst = burst; this.concurrency = Math.max(1, concurrency);
+  }
+
+  /** Lower-case, trim and collapse whitespace so trivially different spellings share one lookup. */
+  public static String normalize(String address) {
+    return address == null ? "" : address.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+  }
+
+  public Stream<Result> geocodeAll(Collection<String> addresses) {
+    Map<String, List<String>> byKey = new LinkedHashMap<>();
+    for (String a : addresses) byKey.computeIfAbsent(normalize(a), k -> new ArrayList<>()).add(a);
+
+    int expected = addresses.size();
+    BlockingQueue<Result> done = new LinkedBlockingQueue<>();
+    TokenBucket bucket = new TokenBucket(perSecond, burst);
+    ExecutorService pool = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(1, byKey.size())), r -> {
+      Thread t = new Thread(r, "geocode-bulk"); t.setDaemon(true); return t;
+    });
+    // an Error in the geocoder still queues every result; the consumer rethrows it
+    AtomicReference<Error> fatal = new AtomicReference<>();
+    for (var e : byKey.entrySet()) {
+      pool.execute(() -> {
+        Geocoder.Pt pt = null; Exception err = null;
+        try {
+          if (e.getKey().isEmpty()) err = new IllegalArgumentException("blank address");
+          else { bucket.acquire(); pt = geocoder.geocode(e.getValue().get(0)); }
+        } catch (InterruptedException ie) { Thread.currentThread().interrupt(); err = ie; }
+        catch (Exception ex) { err = ex; }
+        catch (Error er) { fatal.compareAndSet(null, er); err = new ExecutionException(er); }
+        finally {
+          for (String input : e.getValue()) done.add(new Result(input, pt, err));
+        }
+      });
+    }
+    pool.shutdown();
+
+    Iterator<Result> it = new Iterator<>() {
+      int taken = 0;
+      @Override public boolean hasNext() { return taken < expected; }
+      @Override public Result next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        Result r;
+        try { taken++; r = done.take(); }
+        catch (InterruptedException ie) { Thread.currentThread().interrupt(); throw new CancellationException("interrupted"); }
+        if (fatal.get() != null) throw fatal.get();
+        return r;
+      }
+    };
+    return StreamSupport.stream(Spliterators.spliterator(it, expected, Spliterator.NONNULL), false)
+        .onClose(pool::shutdownNow);
+  }
+}
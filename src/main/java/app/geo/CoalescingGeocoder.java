@@ -0,0 +1,23 @@
+package app.geo;
+
+import app.net.SingleFlight;
+
+import java.util.Collection;
+import java.util.stream.Stream;
+
+/** Shares one lookup between concurrent geocode calls for the same normalized address. */
+public final class CoalescingGeocoder implements Geocoder {
+  private final Geocoder upstream;
+  private final SingleFlight<String, Pt> flight = new SingleFlight<>();
+
+  public CoalescingGeocoder(Geocoder upstream) { this.upstream = upstream; }
+
+  @Override public Pt geocode(String address) throws Exception {
+    return flight.run(BulkGeocoder.normalize(address), () -> upstream.geocode(address));
+  }
+
+  /** Bulk runs keep the upstream's own pacing policy (and dedupe on their own). */
+  @Override public Stream<Result> geocodeAll(Collection<String> addresses) { return upstream.geocodeAll(addresses); }
+
+  public SingleFlight<String, Pt> stats() { return flight; }
+}
@@ -1,7 +1,19 @@
 package app.geo;
 
+import java.util.Collection;
+import java.util.stream.Stream;
+
 public interface Geocoder {
   record Pt(double lat, double lon) {}
+  /** One bulk-geocoding outcome: either pt or error is set. */
+  record Result(String address, Pt pt, Exception error) {
+    public boolean ok() { return error == null; }
+  }
+
   Pt geocode(String address) throws Exception;
-}
 
+  /** Bulk lookup, one result per input in completion order; paced at Nominatim's 1 req/s by default. */
+  default Stream<Result> geocodeAll(Collection<String> addresses) {
+    return new BulkGeocoder(this, 1.0, 1, 2).geocodeAll(addresses);
+  }
+}
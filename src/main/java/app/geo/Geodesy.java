@@ -0,0 +1,94 @@
+package app.geo;
+
+/**
+ * Shared great-circle kernels (meters). Batch calls run on {@code jdk.incubator.vector} when the
+ * module is present (add {@code --add-modules jdk.incubator.vector}), otherwise on the scalar loops
+ * below; {@code -Dgeodesy.scalar=true} forces the scalar path.
+ */
+public final class Geodesy {
+  private Geodesy(){}
+
+  public static final double EARTH_RADIUS_M = 6371000.0;
+  static final double DEG = Math.PI / 180.0;
+
+  /** Below this many elements the vector setup is not worth it. */
+  private static final int VECTOR_MIN = 16;
+  private static final boolean VECTOR = !Boolean.getBoolean("geodesy.scalar")
+      && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+  public static boolean vectorized() { return VECTOR; }
+
+  /** Haversine distance between two points. */
+  public static double haversineM(double lat1, double lon1, double lat2, double lon2) {
+    double sLat = Math.sin((lat2 - lat1) * DEG * 0.5), sLon = Math.sin((lon2 - lon1) * DEG * 0.5);
+    double a = sLat*sLat + Math.cos(lat1 * DEG) * Math.cos(lat2 * DEG) * sLon*sLon;
+    return 2 * EARTH_RADIUS_M * Math.asin(Math.sqrt(Math.min(1.0, a)));
+  }
+
+  /** out[i] = distance from (lat,lon) to (lats[i],lons[i]). */
+  public static void distancesM(double lat, double lon, double[] lats, double[] lons, double[] out) {
+    int n = lats.length;
+    int i = (VECTOR && n >= VECTOR_MIN) ? GeodesyVector.distances(lat, lon, lats, lons, out) : 0;
+    for (; i < n; i++) out[i] = haversineM(lat, lon, lats[i], lons[i]);
+  }
+
+  /** out[i] = length of the polyline from vertex 0 to vertex i (out[0] = 0). */
+  public static void cumulativeLengthM(double[] lats, double[] lons, double[] out) {
+    int n = lats.length;
+    if (n == 0) return;
+    out[0] = 0;
+    // segment lengths into out[1..], then prefix-sum in place
+    int i = (VECTOR && n >= VECTOR_MIN) ? GeodesyVector.segmentLengths(lats, lons, out) : 0;
+    for (; i < n - 1; i++) out[i+1] = haversineM(lats[i], lons[i], lats[i+1], lons[i+1]);
+    for (int k = 1; k < n; k++) out[k] += out[k-1];
+  }
+
+  public static double lengthM(double[] lats, double[] lons) {
+    if (lats.length < 2) return 0;
+    double[] cum = new double[lats.length];
+    cumulativeLengthM(lats, lons, cum);
+    return cum[cum.length - 1];
+  }
+
+  /**
+   * out[i] = distance from (lat,lon) to segment i (vertices i..i+1), for segments [from, to).
+   * Uses a local equirectangular projection around the query point, which is well under a
+   * meter off at corridor scales (a few km).
+   */
+  public static void segmentDistancesM(double lat, double lon, double[] lats, double[] lons,
+                                       int from, int to, double[] out) {
+    int i = (VECTOR && to - from >= VECTOR_MIN) ? GeodesyVector.segmentDistances(lat, lon, lats, lons, from, to, out) : from;
+    double kx = Math.cos(lat * DEG) * DEG * EARTH_RADIUS_M, ky = DEG * EARTH_RADIUS_M;
+    for (; i < to; i++) {
+      out[i] = pointSegment((lons[i] - lon) * kx, (lats[i] - lat) * ky, (lons[i+1] - lon) * kx, (lats[i+1] - lat) * ky);
+    }
+  }
+
+  /** Shortest distance from (lat,lon) to the polyline. */
+  public static double distanceToPolylineM(double lat, double lon, double[] lats, double[] lons) {
+    if (lats.length == 0) return Double.POSITIVE_INFINITY;
+    if (lats.length == 1) return haversineM(lat, lon, lats[0], lons[0]);
+    double[] d = new double[lats.length - 1];
+    segmentDistancesM(lat, lon, lats, lons, 0, d.length, d);
+    double best = Double.POSITIVE_INFINITY;
+    for (double v : d) best = Math.min(best, v);
+    return best;
+  }
+
+  /** Fraction t ∈ [0,1] of the point on segment A→B closest to (lat,lon). */
+  public static double segmentFraction(double lat, double lon, double aLat, double aLon, double bLat, double bLon) {
+    double kx = Math.cos(lat * DEG);
+    double ax = (aLon - lon) * kx, ay = aLat - lat, dx = (bLon - aLon) * kx, dy = bLat - aLat;
+    double len2 = dx*dx + dy*dy;
+    return len2 > 0 ? Math.max(0, Math.min(1, -(ax*dx + ay*dy) / len2)) : 0;
+  }
+
+  /** Distance from the origin to segment A→B in a planar frame. */
+  static double pointSegment(double ax, double ay, double bx, double by) {
+    double dx = bx - ax, dy = by - ay;
+    double len2 = dx*dx + dy*dy;
+    double t = len2 > 0 ? Math.max(0, Math.min(1, -(ax*dx + ay*dy) / len2)) : 0;
+    double px = ax + t*dx, py = ay + t*dy;
+    return Math.sqrt(px*px + py*py);
+  }
+}
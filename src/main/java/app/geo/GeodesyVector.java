@@ -0,0 +1,71 @@
+package app.geo;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static app.geo.Geodesy.DEG;
+import static app.geo.Geodesy.EARTH_RADIUS_M;
+
+/**
+ * Vector API bodies for {@link Geodesy}. Only loaded when the incubator module is present;
+ * each kernel processes whole lanes and returns the index where the scalar tail starts.
+ */
+final class GeodesyVector {
+  private GeodesyVector(){}
+
+  private static final VectorSpecies<Double> S = DoubleVector.SPECIES_PREFERRED;
+
+  static int distances(double lat, double lon, double[] lats, double[] lons, double[] out) {
+    int bound = S.loopBound(lats.length);
+    double cosLat0 = Math.cos(lat * DEG);
+    int i = 0;
+    for (; i < bound; i += S.length()) {
+      DoubleVector la = DoubleVector.fromArray(S, lats, i), lo = DoubleVector.fromArray(S, lons, i);
+      haversine(DoubleVector.broadcast(S, lat), DoubleVector.broadcast(S, lon), la, lo,
+                DoubleVector.broadcast(S, cosLat0), la.mul(DEG).lanewise(VectorOperators.COS))
+          .intoArray(out, i);
+    }
+    return i;
+  }
+
+  /** out[i+1] = |segment i|; returns the first segment left for the scalar loop. */
+  static int segmentLengths(double[] lats, double[] lons, double[] out) {
+    int segs = lats.length - 1;
+    int bound = S.loopBound(segs);
+    int i = 0;
+    for (; i < bound; i += S.length()) {
+      DoubleVector la1 = DoubleVector.fromArray(S, lats, i),   lo1 = DoubleVector.fromArray(S, lons, i);
+      DoubleVector la2 = DoubleVector.fromArray(S, lats, i+1), lo2 = DoubleVector.fromArray(S, lons, i+1);
+      haversine(la1, lo1, la2, lo2,
+                la1.mul(DEG).lanewise(VectorOperators.COS), la2.mul(DEG).lanewise(VectorOperators.COS))
+          .intoArray(out, i + 1);
+    }
+    return i;
+  }
+
+  static int segmentDistances(double lat, double lon, double[] lats, double[] lons, int from, int to, double[] out) {
+    double kx = Math.cos(lat * DEG) * DEG * EARTH_RADIUS_M, ky = DEG * EARTH_RADIUS_M;
+    int bound = from + S.loopBound(to - from);
+    int i = from;
+    for (; i < bound; i += S.length()) {
+      DoubleVector ax = DoubleVector.fromArray(S, lons, i).sub(lon).mul(kx);
+      DoubleVector ay = DoubleVector.fromArray(S, lats, i).sub(lat).mul(ky);
+      DoubleVector dx = DoubleVector.fromArray(S, lons, i+1).sub(lon).mul(kx).sub(ax);
+      DoubleVector dy = DoubleVector.fromArray(S, lats, i+1).sub(lat).mul(ky).sub(ay);
+      DoubleVector len2 = dx.mul(dx).add(dy.mul(dy));
+      DoubleVector t = ax.mul(dx).add(ay.mul(dy)).neg().div(len2.max(1e-12)).max(0.0).min(1.0);
+      DoubleVector px = ax.add(t.mul(dx)), py = ay.add(t.mul(dy));
+      px.mul(px).add(py.mul(py)).lanewise(VectorOperators.SQRT).intoArray(out, i);
+    }
+    return i;
+  }
+
+  private static DoubleVector haversine(DoubleVector lat1, DoubleVector lon1, DoubleVector lat2, DoubleVector lon2,
+                                        DoubleVector cos1, DoubleVector cos2) {
+    DoubleVector sLat = lat2.sub(lat1).mul(DEG * 0.5).lanewise(VectorOperators.SIN);
+    DoubleVector sLon = lon2.sub(lon1).mul(DEG * 0.5).lanewise(VectorOperators.SIN);
+    DoubleVector a = sLat.mul(sLat).add(cos1.mul(cos2).mul(sLon.mul(sLon))).min(1.0);
+    return a.lanewise(VectorOperators.SQRT).lanewise(VectorOperators.ASIN).mul(2 * EARTH_RADIUS_M);
+  }
+}
@@ -3,13 +3,35 @@ package app.geo;
 import java.net.URI;
 import java.net.http.*;
 import java.time.Duration;
+import java.util.Collection;
+import java.util.stream.Stream;
 import java.util.regex.*;
 
 public class NominatimGeocoder implements Geocoder {
+  public static final String DEFAULT_URL = System.getProperty("nominatim.url", "https://nominatim.openstreetmap.org");
+
   private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(4)).build();
+  private final String baseUrl;
+  /** Usage policy is max 1 req/s on the public server; self-hosted instances can go faster (<= 0: unpaced). */
+  private double ratePerSecond = Double.parseDouble(System.getProperty("nominatim.rate", "1"));
+  private int concurrency = Integer.getInteger("nominatim.concurrency", 2);
+
+  public NominatimGeocoder() { this(DEFAULT_URL); }
+  public NominatimGeocoder(String baseUrl) {
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+  }
+
+  public NominatimGeocoder withRate(double perSecond, int concurrency) {
+    this.ratePerSecond = perSecond; this.concurrency = concurrency;
+    return this;
+  }
+
+  @Override public Stream<Result> geocodeAll(Collection<String> addresses) {
+    return new BulkGeocoder(this, ratePerSecond, 1, concurrency).geocodeAll(addresses);
+  }
 
   @Override public Pt geocode(String addr) throws Exception {
-    String url = "https://nominatim.openstreetmap.org/search?format=jsonv2&limit=1&q=" +
+    String url = baseUrl + "/search?format=jsonv2&limit=1&q=" +
       java.net.URLEncoder.encode(addr, java.nio.charset.StandardCharsets.UTF_8);
     HttpRequest req = HttpRequest.newBuilder(URI.create(url))
       .header("User-Agent","myway-min/1.0 (testing)")
@@ -0,0 +1,31 @@
+package app.geo;
+
+import java.util.concurrent.TimeUnit;
+
+/** Token bucket pacer: {@code perSecond} sustained, up to {@code burst} back to back. Thread-safe. */
+public final class TokenBucket {
+  private final double perNano, capacity;
+  private double tokens;
+  private long last = System.nanoTime();
+
+  /** perSecond <= 0 means unlimited. */
+  public TokenBucket(double perSecond, int burst) {
+    this.perNano = perSecond / 1e9;
+    this.capacity = Math.max(1, burst);
+    this.tokens = capacity;
+  }
+
+  /** Take one token, sleeping until it is due. Callers are served in arrival order. */
+  public void acquire() throws InterruptedException {
+    if (perNano <= 0) return;
+    long waitNs;
+    synchronized (this) {
+      long now = System.nanoTime();
+      tokens = Math.min(capacity, tokens + (now - last) * perNano);
+      last = now;
+      tokens -= 1;                       // may go negative: that is a reservation
+      waitNs = tokens >= 0 ? 0 : (long) Math.ceil(-tokens / perNano);
+    }
+    if (waitNs > 0) TimeUnit.NANOSECONDS.sleep(waitNs);
+  }
+}
@@ -0,0 +1,58 @@
+package app.net;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Request coalescing: concurrent calls with an equal key share one in-flight execution and its
+ * result (or failure). Nothing is cached once the call completes.
+ */
+public final class SingleFlight<K, V> {
+  @FunctionalInterface
+  public interface Call<V> { V call() throws Exception; }
+
+  private final ConcurrentHashMap<K, CompletableFuture<V>> inflight = new ConcurrentHashMap<>();
+  private final LongAdder requests = new LongAdder(), executions = new LongAdder();
+
+  public V run(K key, Call<V> call) throws Exception {
+    requests.increment();
+    CompletableFuture<V> mine = new CompletableFuture<>();
+    CompletableFuture<V> leader = inflight.putIfAbsent(key, mine);
+    if (leader != null) return await(leader);
+
+    executions.increment();
+    try {
+      V v = call.call();
+      mine.complete(v);
+      return v;
+    } catch (Exception | Error e) {
+      mine.completeExceptionally(e);
+      throw e;
+    } finally {
+      inflight.remove(key, mine);
+    }
+  }
+
+  /** Join a future shared by another caller, rethrowing its failure as-is. */
+  public static <V> V await(CompletableFuture<V> f) throws Exception {
+    try {
+      return f.get();
+    } catch (ExecutionException e) {
+      Throwable c = e.getCause();
+      if (c instanceof Exception ex) throw ex;
+      if (c instanceof Error er) throw er;
+      throw e;
+    }
+  }
+
+  public long requests()   { return requests.sum(); }
+  public long executions() { return executions.sum(); }
+
+  /** Share of requests that did not reach upstream (0 = no coalescing). */
+  public double dedupRatio() {
+    long r = requests.sum();
+    return r == 0 ? 0 : 1.0 - (double) executions.sum() / r;
+  }
+}
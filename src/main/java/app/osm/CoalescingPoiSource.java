@@ -0,0 +1,80 @@
+package app.osm;
+
+import app.geo.Geodesy;
+import app.net.SingleFlight;
+import app.osm.OverpassClient.Poi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Coalesces concurrent stop lookups. Upstream is asked for at least {@link #FETCH_LIMIT} POIs
+ * (more when the caller's limit is larger); a request whose circle lies inside an in-flight
+ * request's circle, and whose limit that request fetched, waits for that result and
+ * filters/re-ranks it for its own center, radius and limit instead of going upstream. A result
+ * that hit its fetch limit may be truncated, so covered callers then fetch on their own.
+ */
+public final class CoalescingPoiSource implements PoiSource {
+  public static final int FETCH_LIMIT = 50;
+
+  private record InFlight(double lat, double lon, int radius, int fetchLimit, CompletableFuture<List<Poi>> result) {}
+
+  private final PoiSource upstream;
+  private final List<InFlight> inflight = new ArrayList<>();
+  private final LongAdder requests = new LongAdder(), executions = new LongAdder();
+
+  public CoalescingPoiSource(PoiSource upstream) { this.upstream = upstream; }
+
+  @Override public List<Poi> findNearbyStops(double lat, double lon, int radiusMeters, int limit) throws Exception {
+    requests.increment();
+    InFlight cover = null, mine;
+    synchronized (inflight) {
+      for (InFlight f : inflight) {
+        if (limit <= f.fetchLimit() && Geodesy.haversineM(lat, lon, f.lat(), f.lon()) + radiusMeters <= f.radius()) {
+          cover = f; break;
+        }
+      }
+      mine = cover == null ? new InFlight(lat, lon, radiusMeters, fetchLimit(limit), new CompletableFuture<>()) : null;
+      if (mine != null) inflight.add(mine);
+    }
+    if (cover != null) {
+      List<Poi> shared = SingleFlight.await(cover.result());
+      if (shared.size() < cover.fetchLimit()) return OverpassClient.nearest(within(shared, lat, lon, radiusMeters), lat, lon, limit);
+      return fetch(new InFlight(lat, lon, radiusMeters, fetchLimit(limit), new CompletableFuture<>()), limit, false);
+    }
+    return fetch(mine, limit, true);
+  }
+
+  private List<Poi> fetch(InFlight f, int limit, boolean registered) throws Exception {
+    executions.increment();
+    try {
+      List<Poi> all = List.copyOf(upstream.findNearbyStops(f.lat(), f.lon(), f.radius(), f.fetchLimit()));
+      f.result().complete(all);
+      return all.size() > limit ? all.subList(0, limit) : all;
+    } catch (Exception | Error e) {
+      f.result().completeExceptionally(e);
+      throw e;
+    } finally {
+      if (registered) synchronized (inflight) { inflight.remove(f); }
+    }
+  }
+
+  private static int fetchLimit(int limit) { return Math.max(limit, FETCH_LIMIT); }
+
+  private static List<Poi> within(List<Poi> pois, double lat, double lon, int radiusMeters) {
+    List<Poi> out = new ArrayList<>(pois.size());
+    for (Poi p : pois) if (Geodesy.haversineM(lat, lon, p.lat(), p.lon()) <= radiusMeters) out.add(p);
+    return out;
+  }
+
+  public long requests()   { return requests.sum(); }
+  public long executions() { return executions.sum(); }
+
+  /** Share of lookups that did not reach upstream. */
+  public double dedupRatio() {
+    long r = requests.sum();
+    return r == 0 ? 0 : 1.0 - (double) executions.sum() / r;
+  }
+}
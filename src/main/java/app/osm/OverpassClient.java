@@ -1,5 +1,7 @@
 package app.osm;
 
+import app.geo.Geodesy;
+
 import java.net.URI;
 import java.net.URLEncoder;
 import java.net.http.*;
@@ -11,14 +13,21 @@ import java.util.*;
 import java.util.regex.*;
 
 /** Overpass client to find nearby stop candidates around a location (robust parsing + debug). */
-public class OverpassClient {
+public class OverpassClient implements PoiSource {
   private static final boolean DEBUG = Boolean.getBoolean("overpass.debug");
+  public static final String DEFAULT_URL = System.getProperty("overpass.url", "https://overpass-api.de/api/interpreter");
+
   private final HttpClient http = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(12)).build();
+  private final String endpoint;
+
+  public OverpassClient() { this(DEFAULT_URL); }
+  /** Full interpreter endpoint, e.g. "http://localhost:12345/api/interpreter". */
+  public OverpassClient(String endpoint) { this.endpoint = endpoint; }
 
   public record Poi(String name, String kind, double lat, double lon) {}
 
   /** Return up to 'limit' POIs within 'radiusMeters', sorted by distance to (lat,lon). */
-  public List<Poi> findNearbyStops(double lat, double lon, int radiusMeters, int limit) throws Exception {
+  @Override public List<Poi> findNearbyStops(double lat, double lon, int radiusMeters, int limit) throws Exception {
     String q = """
       [out:json][timeout:12];
       (
@@ -29,11 +38,16 @@ public class OverpassClient {
          .replace("LAT", String.valueOf(lat))
          .replace("LON", String.valueOf(lon));
 
-    String body = "data=" + URLEncoder.encode(q, StandardCharsets.UTF_8);
-    HttpRequest req = HttpRequest.newBuilder(URI.create("https://overpass-api.de/api/interpreter"))
+    return nearest(parse(query(q)), lat, lon, limit);
+  }
+
+  /** POST an Overpass QL query and return the raw response body. */
+  public String query(String overpassQl) throws Exception {
+    String body = "data=" + URLEncoder.encode(overpassQl, StandardCharsets.UTF_8);
+    HttpRequest req = HttpRequest.newBuilder(URI.create(endpoint))
         .header("Content-Type","application/x-www-form-urlencoded")
         .header("User-Agent","myway-min/1.0 (dev)")
-        .timeout(Duration.ofSeconds(20))
+        .timeout(Duration.ofSeconds(60))
         .POST(HttpRequest.BodyPublishers.ofString(body))
         .build();
 
@@ -44,11 +58,21 @@ public class OverpassClient {
       System.err.println("[OVERPASS] HTTP " + resp.statusCode() + " wrote build/overpass-last.json");
     }
     if (resp.statusCode() != 200) throw new IllegalStateException("Overpass HTTP " + resp.statusCode());
+    return resp.body();
+  }
 
-    List<Poi> all = parse(resp.body());
-    all.sort(Comparator.comparingDouble(p -> hav(lat, lon, p.lat, p.lon)));
-    if (all.size() > limit) return all.subList(0, limit);
-    return all;
+  /** Up to 'limit' POIs ordered by distance to (lat,lon); distances are computed once, in one batch. */
+  static List<Poi> nearest(List<Poi> all, double lat, double lon, int limit) {
+    int n = all.size();
+    double[] lats = new double[n], lons = new double[n], d = new double[n];
+    for (int i = 0; i < n; i++) { lats[i] = all.get(i).lat(); lons[i] = all.get(i).lon(); }
+    Geodesy.distancesM(lat, lon, lats, lons, d);
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) order[i] = i;
+    Arrays.sort(order, Comparator.comparingDouble(i -> d[i]));
+    List<Poi> out = new ArrayList<>(Math.min(n, limit));
+    for (int i = 0; i < n && out.size() < limit; i++) out.add(all.get(order[i]));
+    return out;
   }
 
   /** Robustly parse Overpass JSON nodes into POIs (no external JSON lib). */
@@ -88,13 +112,4 @@ public class OverpassClient {
     cleaned = cleaned.replaceAll("[^0-9eE+\\-\\.]", "");
     return Double.parseDouble(cleaned);
   }
-
-  private static double hav(double lat1,double lon1,double lat2,double lon2){
-    double R=6371000, dLat=Math.toRadians(lat2-lat1), dLon=Math.toRadians(lon2-lon1);
-    double a = Math.sin(dLat/2)*Math.sin(dLat/2) +
-               Math.cos(Math.toRadians(lat1))*Math.cos(Math.toRadians(lat2))*
-               Math.sin(dLon/2)*Math.sin(dLon/2);
-    return R*2*Math.atan2(Math.sqrt(a),Math.sqrt(1-a));
-  }
 }
-
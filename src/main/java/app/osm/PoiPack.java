@@ -0,0 +1,130 @@
+package app.osm;
+
+import app.geo.Geodesy;
+import app.osm.OverpassClient.Poi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only POI tile pack, memory-mapped and queried in place (see {@link PoiPackBuilder}).
+ * <pre>
+ * header   magic "MWPK", version, tileDeg, tileCount, poiCount, dictCount, dir/col/dict offsets
+ * dir      tileCount × { long key, int first, int count }   sorted by key
+ * columns  int latE7[poiCount], int lonE7[poiCount], int kind[poiCount], int name[poiCount]
+ * dict     int off[dictCount + 1], UTF-8 bytes               (kind/name strings, deduplicated)
+ * </pre>
+ * All little-endian. Only the POIs returned by a query are turned into {@link Poi} objects.
+ */
+public final class PoiPack implements PoiSource, AutoCloseable {
+  static final int MAGIC = 0x4B50574D; // "MWPK" little-endian
+  static final int VERSION = 1;
+  static final int HEADER = 64, DIR_ENTRY = 16;
+
+  private final FileChannel ch;
+  private final ByteBuffer buf;
+  private final double tileDeg;
+  private final int tiles, pois, dictCount;
+  private final int dir, latCol, lonCol, kindCol, nameCol, dictOff, dictData;
+
+  private PoiPack(FileChannel ch, MappedByteBuffer mapped) throws IOException {
+    this.ch = ch;
+    this.buf = mapped.order(ByteOrder.LITTLE_ENDIAN);
+    if (buf.getInt(0) != MAGIC) throw new IOException("not a POI pack");
+    if (buf.getInt(4) != VERSION) throw new IOException("unsupported POI pack version " + buf.getInt(4));
+    tileDeg = buf.getDouble(8);
+    tiles = buf.getInt(16);
+    pois = buf.getInt(20);
+    dictCount = buf.getInt(24);
+    dir = (int) buf.getLong(32);
+    latCol = (int) buf.getLong(40);
+    lonCol = latCol + 4 * pois;
+    kindCol = lonCol + 4 * pois;
+    nameCol = kindCol + 4 * pois;
+    dictOff = (int) buf.getLong(48);
+    dictData = dictOff + 4 * (dictCount + 1);
+  }
+
+  public static PoiPack open(Path file) throws IOException {
+    FileChannel ch = FileChannel.open(file, StandardOpenOption.READ);
+    try {
+      if (ch.size() > Integer.MAX_VALUE) throw new IOException("POI pack over 2 GB: " + file);
+      return new PoiPack(ch, ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()));
+    } catch (IOException | RuntimeException e) {
+      ch.close();
+      throw e;
+    }
+  }
+
+  public int size() { return pois; }
+  public int tileCount() { return tiles; }
+
+  @Override public List<Poi> findNearbyStops(double lat, double lon, int radiusMeters, int limit) {
+    if (limit <= 0 || pois == 0) return List.of();
+    // bounded best-k by distance, kept sorted by insertion
+    int[] bestIdx = new int[limit];
+    double[] bestD = new double[limit];
+    int k = 0;
+
+    double dLat = radiusMeters / 111_320.0, dLon = dLat / Math.max(0.01, Math.cos(Math.toRadians(lat)));
+    int x0 = tx(lon - dLon), x1 = tx(lon + dLon), y0 = ty(lat - dLat), y1 = ty(lat + dLat);
+    for (int x = x0; x <= x1; x++) {
+      for (int y = y0; y <= y1; y++) {
+        int t = findTile(key(x, y));
+        if (t < 0) continue;
+        int e = dir + t * DIR_ENTRY;
+        int first = buf.getInt(e + 8), count = buf.getInt(e + 12);
+        for (int i = first; i < first + count; i++) {
+          double d = Geodesy.haversineM(lat, lon, buf.getInt(latCol + 4*i) / 1e7, buf.getInt(lonCol + 4*i) / 1e7);
+          if (d > radiusMeters || (k == limit && d >= bestD[k-1])) continue;
+          int j = k < limit ? k++ : k - 1;
+          while (j > 0 && bestD[j-1] > d) { bestD[j] = bestD[j-1]; bestIdx[j] = bestIdx[j-1]; j--; }
+          bestD[j] = d; bestIdx[j] = i;
+        }
+      }
+    }
+    List<Poi> out = new ArrayList<>(k);
+    for (int j = 0; j < k; j++) out.add(poi(bestIdx[j]));
+    return out;
+  }
+
+  /** Materialize POI i. */
+  public Poi poi(int i) {
+    return new Poi(string(buf.getInt(nameCol + 4*i)), string(buf.getInt(kindCol + 4*i)),
+        buf.getInt(latCol + 4*i) / 1e7, buf.getInt(lonCol + 4*i) / 1e7);
+  }
+
+  private String string(int id) {
+    int from = buf.getInt(dictOff + 4*id), to = buf.getInt(dictOff + 4*(id+1));
+    byte[] b = new byte[to - from];
+    buf.get(dictData + from, b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+
+  private int findTile(long key) {
+    int lo = 0, hi = tiles - 1;
+    while (lo <= hi) {
+      int mid = (lo + hi) >>> 1;
+      long k = buf.getLong(dir + mid * DIR_ENTRY);
+      if (k < key) lo = mid + 1; else if (k > key) hi = mid - 1; else return mid;
+    }
+    return -1;
+  }
+
+  private int tx(double lon) { return tileX(lon, tileDeg); }
+  private int ty(double lat) { return tileY(lat, tileDeg); }
+
+  static int tileX(double lon, double tileDeg) { return (int) Math.floor((lon + 180.0) / tileDeg); }
+  static int tileY(double lat, double tileDeg) { return (int) Math.floor((lat + 90.0) / tileDeg); }
+  static long key(int x, int y) { return ((long) x << 32) | (y & 0xFFFFFFFFL); }
+
+  @Override public void close() throws IOException { ch.close(); }
+}
@@ -0,0 +1,115 @@
+package app.osm;
+
+import app.osm.OverpassClient.Poi;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.*;
+
+/** Builds a {@link PoiPack} file from Overpass JSON, a DuckDB table or plain POIs. */
+public final class PoiPackBuilder {
+  private final double tileDeg;
+  private final List<Poi> pois = new ArrayList<>();
+
+  /** tileDeg 0.05° ≈ 5.5 km: a stop search (2.5–5 km) touches a handful of tiles. */
+  public PoiPackBuilder() { this(0.05); }
+  public PoiPackBuilder(double tileDeg) { this.tileDeg = tileDeg; }
+
+  public PoiPackBuilder add(Poi p) { pois.add(p); return this; }
+
+  public PoiPackBuilder addAll(Collection<Poi> ps) { pois.addAll(ps); return this; }
+
+  /** Nodes from an Overpass {@code [out:json]} response (same parsing as the live client). */
+  public PoiPackBuilder addOverpassJson(String json) { return addAll(OverpassClient.parse(json)); }
+
+  /** Rows of a DuckDB table/view with columns name, kind, lat, lon. */
+  public PoiPackBuilder addFromDuckDb(Connection c, String table) throws Exception {
+    if (!table.matches("[A-Za-z_][A-Za-z0-9_.]*")) throw new IllegalArgumentException("bad table name: " + table);
+    try (Statement s = c.createStatement();
+         ResultSet rs = s.executeQuery("SELECT name, kind, lat, lon FROM " + table + " WHERE lat IS NOT NULL AND lon IS NOT NULL")) {
+      while (rs.next()) {
+        String name = rs.getString(1), kind = rs.getString(2);
+        pois.add(new Poi(name == null || name.isBlank() ? "Stop" : name,
+                         kind == null || kind.isBlank() ? "amenity" : kind, rs.getDouble(3), rs.getDouble(4)));
+      }
+    }
+    return this;
+  }
+
+  public int size() { return pois.size(); }
+
+  public void write(Path out) throws IOException {
+    int n = pois.size();
+    // sort POIs by tile so every tile is one contiguous run
+    long[] keys = new long[n];
+    Integer[] order = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      Poi p = pois.get(i);
+      keys[i] = PoiPack.key(PoiPack.tileX(p.lon(), tileDeg), PoiPack.tileY(p.lat(), tileDeg));
+      order[i] = i;
+    }
+    Arrays.sort(order, Comparator.comparingLong(i -> keys[i]));
+
+    // dictionary: kinds and names share one deduplicated string table
+    Map<String, Integer> dictIds = new LinkedHashMap<>();
+    int[] kindId = new int[n], nameId = new int[n];
+    for (int j = 0; j < n; j++) {
+      Poi p = pois.get(order[j]);
+      kindId[j] = dictIds.computeIfAbsent(p.kind(), k -> dictIds.size());
+      nameId[j] = dictIds.computeIfAbsent(p.name(), k -> dictIds.size());
+    }
+    List<byte[]> strings = new ArrayList<>(dictIds.size());
+    int blob = 0;
+    for (String s : dictIds.keySet()) { byte[] b = s.getBytes(StandardCharsets.UTF_8); strings.add(b); blob += b.length; }
+
+    int tiles = 0;
+    for (int j = 0; j < n; j++) if (j == 0 || keys[order[j]] != keys[order[j-1]]) tiles++;
+
+    long dir = PoiPack.HEADER;
+    long cols = dir + (long) tiles * PoiPack.DIR_ENTRY;
+    long dict = cols + 16L * n;
+    long size = dict + 4L * (strings.size() + 1) + blob;
+    if (size > Integer.MAX_VALUE) throw new IOException("POI pack would exceed 2 GB");
+
+    ByteBuffer b = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+    b.putInt(PoiPack.MAGIC).putInt(PoiPack.VERSION).putDouble(tileDeg)
+     .putInt(tiles).putInt(n).putInt(strings.size()).putInt(0)
+     .putLong(dir).putLong(cols).putLong(dict).putLong(size);
+
+    b.position((int) dir);
+    for (int j = 0; j < n; ) {
+      long key = keys[order[j]];
+      int first = j;
+      while (j < n && keys[order[j]] == key) j++;
+      b.putLong(key).putInt(first).putInt(j - first);
+    }
+    b.position((int) cols);
+    for (int j = 0; j < n; j++) b.putInt((int) Math.round(pois.get(order[j]).lat() * 1e7));
+    for (int j = 0; j < n; j++) b.putInt((int) Math.round(pois.get(order[j]).lon() * 1e7));
+    for (int j = 0; j < n; j++) b.putInt(kindId[j]);
+    for (int j = 0; j < n; j++) b.putInt(nameId[j]);
+
+    b.position((int) dict);
+    int off = 0;
+    for (byte[] s : strings) { b.putInt(off); off += s.length; }
+    b.putInt(off);
+    for (byte[] s : strings) b.put(s);
+    b.flip();
+
+    Path tmp = out.resolveSibling(out.getFileName() + ".tmp");
+    try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      while (b.hasRemaining()) ch.write(b);
+    }
+    Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING);
+  }
+}
@@ -0,0 +1,11 @@
+package app.osm;
+
+import app.osm.OverpassClient.Poi;
+
+import java.util.List;
+
+/** Where stop candidates come from: live Overpass, a local tile pack, ... */
+public interface PoiSource {
+  /** Up to 'limit' POIs within 'radiusMeters', sorted by distance to (lat,lon). */
+  List<Poi> findNearbyStops(double lat, double lon, int radiusMeters, int limit) throws Exception;
+}
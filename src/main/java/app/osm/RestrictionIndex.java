@@ -0,0 +1,345 @@
+package app.osm;
+
+import app.route.OsrmClient.Route;
+import app.route.Polyline;
+import app.track.SegmentIndex;
+import app.user.CarProfile;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * OSM vehicle restrictions (maxheight / maxweight / hgv=no ways) cached in DuckDB
+ * (tables {@code restriction_ways}, {@code restriction_way_cells}, {@code restriction_cells}, see
+ * {@link app.db.Db#migrate}).
+ * Ways are fetched per 0.1° cell, all uncovered cells along a route in one Overpass query, and
+ * stored without reference to any vehicle, so one cache serves every {@link CarProfile}. Each way
+ * is also filed under the cells it touches, so a check only reads the route's corridor.
+ * {@link #check} walks a route once against a {@link SegmentIndex} of the blocking ways.
+ * The index owns its connection (see {@link app.db.Db#duplicate}) and closes it.
+ */
+public final class RestrictionIndex implements AutoCloseable {
+  public static final double CELL_DEG = 0.1;
+  /** hgv=no applies to vehicles above this weight (EU N2/N3 threshold). */
+  public static final double HGV_KG = 3500;
+  /** Route segments whose midpoint lies this close to a restricted way, and run along it, use it. */
+  static final double MATCH_M = 5;
+  /** Bounding boxes per Overpass query; a long route's cells are fetched in a few large queries. */
+  static final int MAX_CELLS_PER_QUERY = 200;
+  static final long MAX_AGE_MS = Long.getLong("restrictions.maxAgeDays", 30) * 86_400_000L;
+
+  /** One restricted way; null limits are absent. hgv holds the raw tag value. */
+  public record Restriction(long wayId, Double maxHeightM, Double maxWeightKg, String hgv, double[] lats, double[] lons) {
+    /** Why the vehicle may not use this way, or null when it may. Unknown dimensions never block. */
+    public String blocks(CarProfile car) {
+      Double h = car.heightM(), w = car.weightKg();
+      if (maxHeightM != null && h != null && h > maxHeightM) return String.format("maxheight %.2f m", maxHeightM);
+      if (maxWeightKg != null && w != null && w > maxWeightKg) return String.format("maxweight %.1f t", maxWeightKg / 1000.0);
+      if ("no".equals(hgv) && w != null && w > HGV_KG) return "hgv=no";
+      return null;
+    }
+  }
+
+  /** First route segment that runs along a blocking way. */
+  public record Violation(int segment, long wayId, String reason, double lat, double lon) {}
+
+  private final Connection conn;
+  private final OverpassClient overpass;
+
+  public RestrictionIndex(Connection conn, OverpassClient overpass) {
+    this.conn = conn; this.overpass = overpass;
+  }
+
+  @Override public void close() throws SQLException { conn.close(); }
+
+  /** Make sure the route's cells are cached, then check it for the vehicle. */
+  public List<Violation> validate(Route r, CarProfile car) throws Exception {
+    if (car.heightM() == null && car.weightKg() == null) return List.of();
+    SortedSet<Long> cells = cellsAlong(r.lats(), r.lons());
+    ensureCovered(cells);
+    return check(r, load(cells, car), car);
+  }
+
+  /** Fetch every cell the route touches that is missing or stale; returns the number of cells fetched. */
+  public int ensureCovered(Route r) throws Exception { return ensureCovered(cellsAlong(r.lats(), r.lons())); }
+
+  private synchronized int ensureCovered(SortedSet<Long> routeCells) throws Exception {
+    SortedSet<Long> cells = new TreeSet<>(routeCells);
+    if (cells.isEmpty()) return 0;
+    try (PreparedStatement ps = conn.prepareStatement(
+        "SELECT cell FROM restriction_cells WHERE fetched_at >= ? AND cell IN (" + join(cells) + ")")) {
+      ps.setTimestamp(1, new Timestamp(System.currentTimeMillis() - MAX_AGE_MS));
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) cells.remove(rs.getLong(1));
+      }
+    }
+    List<Long> missing = new ArrayList<>(cells);
+    for (int from = 0; from < missing.size(); from += MAX_CELLS_PER_QUERY) {
+      List<Long> chunk = missing.subList(from, Math.min(missing.size(), from + MAX_CELLS_PER_QUERY));
+      store(parseWays(overpass.query(query(chunk))), chunk);
+    }
+    return missing.size();
+  }
+
+  /**
+   * Load a local extract (Overpass JSON with {@code out tags geom}) covering the given box; cells
+   * lying entirely inside it count as cached, so routes there need no network.
+   */
+  public synchronized int importOverpassJson(String json, double south, double west, double north, double east) throws Exception {
+    List<Restriction> ways = parseWays(json);
+    List<Long> cells = new ArrayList<>();
+    int x0 = (int) Math.ceil((west + 180.0) / CELL_DEG - 1e-9), x1 = (int) Math.floor((east + 180.0) / CELL_DEG + 1e-9) - 1;
+    int y0 = (int) Math.ceil((south + 90.0) / CELL_DEG - 1e-9), y1 = (int) Math.floor((north + 90.0) / CELL_DEG + 1e-9) - 1;
+    for (int x = x0; x <= x1; x++)
+      for (int y = y0; y <= y1; y++) cells.add(PoiPack.key(x, y));
+    store(ways, cells);
+    return ways.size();
+  }
+
+  /** Cached ways touching any of these cells that block this vehicle. */
+  public synchronized List<Restriction> load(Collection<Long> cells, CarProfile car) throws Exception {
+    List<Restriction> out = new ArrayList<>();
+    if (cells.isEmpty()) return out;
+    try (PreparedStatement ps = conn.prepareStatement(
+        "SELECT way_id, max_height_m, max_weight_kg, hgv, geometry FROM restriction_ways"
+        + " WHERE way_id IN (SELECT way_id FROM restriction_way_cells WHERE cell IN (" + join(cells) + "))"
+        + " AND (max_height_m < ? OR max_weight_kg < ? OR (hgv = 'no' AND ?))")) {
+      ps.setDouble(1, car.heightM() == null ? -1 : car.heightM());
+      ps.setDouble(2, car.weightKg() == null ? -1 : car.weightKg());
+      ps.setBoolean(3, car.weightKg() != null && car.weightKg() > HGV_KG);
+      try (ResultSet rs = ps.executeQuery()) {
+        while (rs.next()) {
+          double[][] g = Polyline.decode(rs.getString(5), Polyline.PRECISION6);
+          out.add(new Restriction(rs.getLong(1), (Double) rs.getObject(2), (Double) rs.getObject(3), rs.getString(4), g[0], g[1]));
+        }
+      }
+    }
+    return out;
+  }
+
+  /**
+   * Single pass over the route: each segment's midpoint is looked up in a grid index of the
+   * blocking ways' segments and counts when it lies within {@link #MATCH_M} and runs parallel,
+   * so passing under a low bridge or crossing a restricted street does not. One violation per way.
+   */
+  public static List<Violation> check(Route r, List<Restriction> ways, CarProfile car) {
+    List<Restriction> blocking = new ArrayList<>();
+    List<String> reasons = new ArrayList<>();
+    int n = 0;
+    for (Restriction w : ways) {
+      String why = w.lats().length < 2 ? null : w.blocks(car);
+      if (why == null) continue;
+      blocking.add(w); reasons.add(why); n += w.lats().length;
+    }
+    if (blocking.isEmpty() || r.size() < 2) return List.of();
+
+    // all blocking ways in one polyline; the joins between them are not indexed
+    double[] lats = new double[n], lons = new double[n];
+    int[] wayOf = new int[n];
+    BitSet joins = new BitSet(n);
+    int k = 0;
+    for (int j = 0; j < blocking.size(); j++) {
+      Restriction w = blocking.get(j);
+      System.arraycopy(w.lats(), 0, lats, k, w.lats().length);
+      System.arraycopy(w.lons(), 0, lons, k, w.lons().length);
+      Arrays.fill(wayOf, k, k + w.lats().length, j);
+      k += w.lats().length;
+      joins.set(k - 1);
+    }
+    SegmentIndex index = new SegmentIndex(lats, lons, 0.005, joins);
+
+    List<Violation> out = new ArrayList<>();
+    boolean[] reported = new boolean[blocking.size()];
+    SegmentIndex.Snap snap = new SegmentIndex.Snap();
+    double[] rl = r.lats(), ro = r.lons();
+    for (int i = 0; i + 1 < rl.length; i++) {
+      double mLat = (rl[i] + rl[i+1]) / 2, mLon = (ro[i] + ro[i+1]) / 2;
+      if (!index.nearest(mLat, mLon, MATCH_M, snap)) continue;
+      int s = snap.segment, j = wayOf[s];
+      if (reported[j] || !parallel(rl[i], ro[i], rl[i+1], ro[i+1], lats[s], lons[s], lats[s+1], lons[s+1])) continue;
+      reported[j] = true;
+      out.add(new Violation(i, blocking.get(j).wayId(), reasons.get(j), mLat, mLon));
+    }
+    return out;
+  }
+
+  private static boolean parallel(double aLat, double aLon, double bLat, double bLon,
+                                  double cLat, double cLon, double dLat, double dLon) {
+    double kx = Math.cos(Math.toRadians(aLat));
+    double ux = (bLon - aLon) * kx, uy = bLat - aLat, vx = (dLon - cLon) * kx, vy = dLat - cLat;
+    double len = Math.sqrt((ux*ux + uy*uy) * (vx*vx + vy*vy));
+    return len > 0 && Math.abs(ux*vx + uy*vy) >= 0.9 * len;
+  }
+
+  private void store(List<Restriction> ways, List<Long> cells) throws Exception {
+    boolean auto = conn.getAutoCommit();
+    conn.setAutoCommit(false);
+    try {
+      try (PreparedStatement ps = conn.prepareStatement(
+          "INSERT OR REPLACE INTO restriction_ways VALUES (?,?,?,?,?)")) {
+        for (Restriction w : ways) {
+          ps.setLong(1, w.wayId());
+          if (w.maxHeightM() != null) ps.setDouble(2, w.maxHeightM()); else ps.setNull(2, Types.DOUBLE);
+          if (w.maxWeightKg() != null) ps.setDouble(3, w.maxWeightKg()); else ps.setNull(3, Types.DOUBLE);
+          ps.setString(4, w.hgv());
+          ps.setString(5, Polyline.encode(w.lats(), w.lons(), Polyline.PRECISION6));
+          ps.addBatch();
+        }
+        ps.executeBatch();
+      }
+      // a re-fetched way may have moved: replace its cell membership
+      try (PreparedStatement del = conn.prepareStatement("DELETE FROM restriction_way_cells WHERE way_id = ?");
+           PreparedStatement ins = conn.prepareStatement("INSERT OR REPLACE INTO restriction_way_cells VALUES (?,?)")) {
+        for (Restriction w : ways) {
+          del.setLong(1, w.wayId()); del.addBatch();
+          for (long c : cellsAlong(w.lats(), w.lons())) { ins.setLong(1, c); ins.setLong(2, w.wayId()); ins.addBatch(); }
+        }
+        del.executeBatch();
+        ins.executeBatch();
+      }
+      try (PreparedStatement ps = conn.prepareStatement("INSERT OR REPLACE INTO restriction_cells VALUES (?,?)")) {
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (long c : cells) { ps.setLong(1, c); ps.setTimestamp(2, now); ps.addBatch(); }
+        ps.executeBatch();
+      }
+      conn.commit();
+    } catch (Exception e) {
+      conn.rollback();
+      throw e;
+    } finally {
+      conn.setAutoCommit(auto);
+    }
+  }
+
+  /** Overpass QL for the restricted ways in a set of cells, with tags and inline geometry. */
+  static String query(Collection<Long> cells) {
+    StringBuilder q = new StringBuilder("[out:json][timeout:90];\n(\n");
+    for (long c : cells) {
+      int x = (int) (c >> 32), y = (int) c;
+      String box = String.format(Locale.ROOT, "(%.4f,%.4f,%.4f,%.4f)",
+          y * CELL_DEG - 90, x * CELL_DEG - 180, (y + 1) * CELL_DEG - 90, (x + 1) * CELL_DEG - 180);
+      q.append("  way[\"highway\"][\"maxheight\"]").append(box).append(";\n")
+       .append("  way[\"highway\"][\"maxweight\"]").append(box).append(";\n")
+       .append("  way[\"highway\"][\"hgv\"=\"no\"]").append(box).append(";\n");
+    }
+    return q.append(");\nout tags geom;\n").toString();
+  }
+
+  /** Cells touched by any segment's bounding box, as {@link PoiPack#key} keys (see {@link #load}). */
+  public static SortedSet<Long> cellsAlong(double[] lats, double[] lons) {
+    SortedSet<Long> out = new TreeSet<>();
+    for (int i = 0; i < lats.length; i++) {
+      int j = Math.min(i + 1, lats.length - 1);
+      int x0 = PoiPack.tileX(Math.min(lons[i], lons[j]), CELL_DEG), x1 = PoiPack.tileX(Math.max(lons[i], lons[j]), CELL_DEG);
+      int y0 = PoiPack.tileY(Math.min(lats[i], lats[j]), CELL_DEG), y1 = PoiPack.tileY(Math.max(lats[i], lats[j]), CELL_DEG);
+      for (int x = x0; x <= x1; x++)
+        for (int y = y0; y <= y1; y++) out.add(PoiPack.key(x, y));
+    }
+    return out;
+  }
+
+  private static String join(Collection<Long> xs) {
+    StringJoiner j = new StringJoiner(",");
+    for (long x : xs) j.add(Long.toString(x));
+    return j.toString();
+  }
+
+  // ---- Overpass JSON (no external JSON lib) ----
+
+  private static final Pattern WAY = Pattern.compile("\\{\\s*\"type\"\\s*:\\s*\"way\"");
+  private static final Pattern ID = Pattern.compile("\"id\"\\s*:\\s*(\\d+)");
+  private static final Pattern LATLON = Pattern.compile("\"lat\"\\s*:\\s*(-?[0-9.eE+-]+)\\s*,\\s*\"lon\"\\s*:\\s*(-?[0-9.eE+-]+)");
+
+  /** Ways from an Overpass {@code out tags geom} response; ways with no usable limit are dropped. */
+  public static List<Restriction> parseWays(String json) {
+    List<Restriction> out = new ArrayList<>();
+    Matcher m = WAY.matcher(json);
+    int from = 0;
+    while (m.find(from)) {
+      int end = close(json, m.start(), '{', '}');
+      String e = json.substring(m.start(), end);
+      from = end;
+
+      Matcher id = ID.matcher(e);
+      int g = e.indexOf("\"geometry\"");
+      if (!id.find() || g < 0) continue;
+      int gs = e.indexOf('[', g);
+      Matcher ll = LATLON.matcher(e.substring(gs, close(e, gs, '[', ']')));
+      List<double[]> pts = new ArrayList<>();
+      while (ll.find()) pts.add(new double[]{ Double.parseDouble(ll.group(1)), Double.parseDouble(ll.group(2)) });
+      if (pts.size() < 2) continue;
+
+      Double h = parseHeightM(tag(e, "maxheight")), w = parseWeightKg(tag(e, "maxweight"));
+      String hgv = tag(e, "hgv");
+      if (h == null && w == null && !"no".equals(hgv)) continue;
+      double[] lats = new double[pts.size()], lons = new double[pts.size()];
+      for (int i = 0; i < lats.length; i++) { lats[i] = pts.get(i)[0]; lons[i] = pts.get(i)[1]; }
+      out.add(new Restriction(Long.parseLong(id.group(1)), h, w, hgv, lats, lons));
+    }
+    return out;
+  }
+
+  private static final Pattern FT_IN = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(?:'|ft)\\s*(?:(\\d+(?:\\.\\d+)?)\\s*(?:\"|in))?");
+  private static final Pattern AMOUNT = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*([a-z]*)");
+
+  /** OSM maxheight value in meters: "3.8", "3,8 m", "12'6\"", "13 ft"; null for none/default/unparseable. */
+  public static Double parseHeightM(String v) {
+    if (v == null) return null;
+    String s = v.trim().toLowerCase(Locale.ROOT).replace(',', '.');
+    Matcher m = FT_IN.matcher(s);
+    if (m.matches()) return Double.parseDouble(m.group(1)) * 0.3048 + (m.group(2) == null ? 0 : Double.parseDouble(m.group(2)) * 0.0254);
+    m = AMOUNT.matcher(s);
+    if (!m.matches()) return null;
+    return switch (m.group(2)) {
+      case "", "m" -> Double.parseDouble(m.group(1));
+      default -> null;
+    };
+  }
+
+  /** OSM maxweight value in kg: "7.5" and "7.5 t" are tonnes; also kg, lbs and st (short tons). */
+  public static Double parseWeightKg(String v) {
+    if (v == null) return null;
+    Matcher m = AMOUNT.matcher(v.trim().toLowerCase(Locale.ROOT).replace(',', '.'));
+    if (!m.matches()) return null;
+    double x = Double.parseDouble(m.group(1));
+    return switch (m.group(2)) {
+      case "", "t" -> x * 1000;
+      case "kg" -> x;
+      case "lbs", "lb" -> x * 0.45359237;
+      case "st" -> x * 907.18474;
+      default -> null;
+    };
+  }
+
+  /** Value of a tag in the element's "tags" object, with JSON string escapes undone. */
+  private static String tag(String e, String key) {
+    int t = e.indexOf("\"tags\"");
+    if (t < 0) return null;
+    Matcher m = Pattern.compile("\"" + Pattern.quote(key) + "\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"").matcher(e);
+    if (!m.find(t)) return null;
+    return m.group(1).replaceAll("\\\\(.)", "$1");
+  }
+
+  /** Index just past the bracket matching the one at s[start], skipping string contents. */
+  private static int close(String s, int start, char open, char shut) {
+    int depth = 0;
+    boolean str = false;
+    for (int i = start; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (str) {
+        if (c == '\\') i++;
+        else if (c == '"') str = false;
+      } else if (c == '"') str = true;
+      else if (c == open) depth++;
+      else if (c == shut && --depth == 0) return i + 1;
+    }
+    return s.length();
+  }
+}
@@ -0,0 +1,23 @@
+package app.route;
+
+import app.net.SingleFlight;
+import app.route.OsrmClient.Route;
+
+import java.util.List;
+import java.util.Locale;
+
+/** Shares one upstream call between concurrent identical routeVia requests (waypoints rounded to 1e-6°). */
+public final class CoalescingRouter implements Router {
+  private final Router upstream;
+  private final SingleFlight<String, Route> flight = new SingleFlight<>();
+
+  public CoalescingRouter(Router upstream) { this.upstream = upstream; }
+
+  @Override public Route routeVia(List<double[]> waypoints) throws Exception {
+    StringBuilder key = new StringBuilder(waypoints.size() * 24);
+    for (double[] w : waypoints) key.append(String.format(Locale.ROOT, "%.6f,%.6f;", w[0], w[1]));
+    return flight.run(key.toString(), () -> upstream.routeVia(waypoints));
+  }
+
+  public SingleFlight<String, Route> stats() { return flight; }
+}
@@ -0,0 +1,88 @@
+package app.route;
+
+import app.route.OsrmClient.Route;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Via-routing as a chain of cached legs. Each consecutive waypoint pair is routed on its own
+ * and remembered, so moving one stop only re-requests the two legs touching it; the legs are
+ * then spliced back into a single {@link Route}. Cached legs hold polyline6 geometry, not doubles.
+ */
+public final class LegRouter implements Router {
+  private static final int MAX_LEGS = 512;
+
+  private record Leg(double distanceM, double durationS, String polyline6, double[] segmentDurationsS) {
+    static Leg of(Route r) { return new Leg(r.distanceM(), r.durationS(), r.encodedGeometry(), r.segmentDurationsS()); }
+    Route route() { return Route.fromEncoded(distanceM, durationS, polyline6, segmentDurationsS); }
+  }
+
+  private final Router upstream;
+  private final Map<String, Leg> legs = Collections.synchronizedMap(
+      new LinkedHashMap<>(64, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String, Leg> e) { return size() > MAX_LEGS; }
+      });
+  private final AtomicInteger requests = new AtomicInteger();
+
+  public LegRouter(Router upstream) { this.upstream = upstream; }
+
+  @Override public Route routeVia(List<double[]> waypoints) throws Exception {
+    if (waypoints == null || waypoints.size() < 2) throw new IllegalArgumentException("need >=2 waypoints");
+    List<Route> parts = new ArrayList<>(waypoints.size() - 1);
+    for (int i = 1; i < waypoints.size(); i++) parts.add(leg(waypoints.get(i-1), waypoints.get(i)));
+    return parts.size() == 1 ? parts.get(0) : splice(parts);
+  }
+
+  /** Route for a single a→b leg, from cache when both endpoints are unchanged. */
+  public Route leg(double[] a, double[] b) throws Exception {
+    String key = key(a, b);
+    Leg cached = legs.get(key);
+    if (cached != null) return cached.route();
+    Route r = upstream.routeVia(List.of(a, b));
+    requests.incrementAndGet();
+    legs.put(key, Leg.of(r));
+    return r;
+  }
+
+  /** Number of upstream leg requests issued so far. */
+  public int upstreamRequests() { return requests.get(); }
+
+  public void clear() { legs.clear(); }
+
+  /** Join legs end to end; a shared joint vertex is kept once, a gap gets a zero-duration segment. */
+  public static Route splice(List<Route> parts) {
+    double dist = 0, dur = 0;
+    int cap = 0;
+    for (Route r : parts) { dist += r.distanceM(); dur += r.durationS(); cap += r.size(); }
+
+    double[] lats = new double[cap], lons = new double[cap];
+    double[] seg = new double[Math.max(0, cap - 1)];
+    int n = 0, s = 0;
+    for (Route r : parts) {
+      int m = r.size();
+      if (m == 0) continue;
+      int from = 0;
+      if (n > 0) {
+        if (lats[n-1] == r.lats()[0] && lons[n-1] == r.lons()[0]) from = 1;
+        else seg[s++] = 0;
+      }
+      System.arraycopy(r.lats(), from, lats, n, m - from);
+      System.arraycopy(r.lons(), from, lons, n, m - from);
+      n += m - from;
+      double[] d = r.segmentDurationsS();
+      for (int i = 0; i < m - 1; i++) seg[s++] = (d != null && i < d.length) ? d[i] : 0;
+    }
+    return new Route(dist, dur, Arrays.copyOf(lats, n), Arrays.copyOf(lons, n), Arrays.copyOf(seg, Math.max(0, n - 1)));
+  }
+
+  private static String key(double[] a, double[] b) {
+    return String.format(Locale.ROOT, "%.6f,%.6f;%.6f,%.6f", a[0], a[1], b[0], b[1]);
+  }
+}
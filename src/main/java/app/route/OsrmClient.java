@@ -1,32 +1,67 @@
 package app.route;
 
+import app.geo.Geodesy;
+
 import java.net.URI;
 import java.net.http.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
-import java.util.ArrayList;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-/** Minimal OSRM client using the public demo server (hardened parsing + debug). */
-public final class OsrmClient {
+/** Minimal OSRM client; public demo server unless -Dosrm.url or a base URL is given (hardened parsing + debug). */
+public final class OsrmClient implements Router {
   private static final boolean DEBUG = Boolean.getBoolean("osrm.debug");
+  public static final String DEFAULT_URL = System.getProperty("osrm.url", "https://router.project-osrm.org");
+
+  private final String baseUrl;
 
   private final HttpClient http = HttpClient.newBuilder()
       .connectTimeout(Duration.ofSeconds(20)).build();
 
-  public record Route(double distanceM, double durationS, List<double[]> coords, double[] segmentDurationsS) {
+  public OsrmClient() { this(DEFAULT_URL); }
+  /** e.g. "http://localhost:5000" for a local osrm-routed or test stand-in. */
+  public OsrmClient(String baseUrl) { this.baseUrl = stripSlash(baseUrl); }
+
+  /** Route geometry is kept as parallel primitive lat/lon arrays; {@link #coords()} is a [lat,lon] view. */
+  public record Route(double distanceM, double durationS, double[] lats, double[] lons, double[] segmentDurationsS) {
+    public int size() { return lats.length; }
+
+    public List<double[]> coords() {
+      return new AbstractList<>() {
+        @Override public double[] get(int i) { return new double[]{ lats[i], lons[i] }; }
+        @Override public int size() { return lats.length; }
+      };
+    }
+
     public double[] cumulativeSeconds() {
-      int n = coords.size();
+      int n = lats.length;
       double[] cum = new double[n];
       if (segmentDurationsS == null || segmentDurationsS.length == 0 || n <= 1) return cum;
       int m = Math.min(segmentDurationsS.length, n - 1);
       for (int i = 1; i <= m; i++) cum[i] = cum[i-1] + segmentDurationsS[i-1];
       return cum;
     }
+
+    /** Along-route distance (m) at each vertex. */
+    public double[] cumulativeMeters() {
+      double[] cum = new double[lats.length];
+      Geodesy.cumulativeLengthM(lats, lons, cum);
+      return cum;
+    }
+
+    /** Geometry as polyline6 — the format used whenever a route is cached or persisted. */
+    public String encodedGeometry() { return Polyline.encode(lats, lons, Polyline.PRECISION6); }
+
+    public static Route fromEncoded(double distanceM, double durationS, String polyline6, double[] segmentDurationsS) {
+      double[][] ll = Polyline.decode(polyline6, Polyline.PRECISION6);
+      return new Route(distanceM, durationS, ll[0], ll[1], segmentDurationsS);
+    }
   }
 
   /** Two-point route. */
@@ -36,16 +71,16 @@ public final class OsrmClient {
   }
 
   /** Multi-waypoint route: entries are [lat,lon]. */
-  public Route routeVia(List<double[]> waypoints) throws Exception {
+  @Override public Route routeVia(List<double[]> waypoints) throws Exception {
     if (waypoints == null || waypoints.size() < 2) throw new IllegalArgumentException("need >=2 waypoints");
 
-    StringBuilder sb = new StringBuilder("https://router.project-osrm.org/route/v1/driving/");
+    StringBuilder sb = new StringBuilder(baseUrl).append("/route/v1/driving/");
     for (int i=0;i<waypoints.size();i++){
       double[] w = waypoints.get(i);
       if (i>0) sb.append(';');
       sb.append(w[1]).append(',').append(w[0]); // lon,lat
     }
-    sb.append("?overview=full&geometries=geojson&steps=false&annotations=duration");
+    sb.append("?overview=full&geometries=polyline6&steps=false&annotations=duration");
 
     String url = sb.toString();
     if (DEBUG) System.err.println("[OSRM] URL: " + url);
@@ -75,9 +110,52 @@ public final class OsrmClient {
     double dist = extractNumber(json, "\"distance\"\\s*:\\s*([0-9.Ee+-]+)");
     double dur  = extractNumber(json, "\"duration\"\\s*:\\s*([0-9.Ee+-]+)");
 
-    // --- find the first route's geometry.coordinates array ---
+    // --- first route's geometry: polyline6 string, or GeoJSON coordinates as a fallback ---
     int geomKey = json.indexOf("\"geometry\"");
     if (geomKey < 0) throw new IllegalStateException("No geometry key");
+    int v = geomKey + "\"geometry\"".length();
+    while (v < json.length() && (json.charAt(v) == ':' || Character.isWhitespace(json.charAt(v)))) v++;
+
+    double[] lats, lons;
+    if (v < json.length() && json.charAt(v) == '"') {
+      int from = v + 1, to = from;
+      while (to < json.length() && json.charAt(to) != '"') to += json.charAt(to) == '\\' ? 2 : 1;
+      if (to >= json.length()) throw new IllegalStateException("Unclosed geometry string");
+      // decoded in place inside the JSON body, so "\\" there is one backslash
+      int n = Polyline.count(json, from, to, true);
+      lats = new double[n]; lons = new double[n];
+      Polyline.decode(json, from, to, Polyline.PRECISION6, true, lats, lons);
+      if (DEBUG) System.err.println("[OSRM] polyline6 points: " + n);
+    } else {
+      double[][] ll = parseGeoJsonCoords(json, geomKey);
+      lats = ll[0]; lons = ll[1];
+    }
+    if (lats.length == 0) throw new IllegalStateException("No coordinate pairs found");
+
+    // durations from first leg's annotation.duration
+    double[] seg = new double[Math.max(0, lats.length - 1)];
+    Pattern ann = Pattern.compile("\"annotation\"\\s*:\\s*\\{[^}]*?\"duration\"\\s*:\\s*\\[(.*?)]", Pattern.DOTALL);
+    Matcher am = ann.matcher(json);
+    if (am.find()) {
+      String arr = am.group(1);
+      Matcher num = Pattern.compile("([-0-9.Ee+]+)").matcher(arr);
+      int i = 0;
+      while (num.find() && i < seg.length) {
+        String tok = num.group(1);
+        try { seg[i++] = parseNum(tok); }
+        catch (NumberFormatException nfe) {
+          if (DEBUG) System.err.println("[OSRM] BAD duration token: " + tok);
+          throw nfe;
+        }
+      }
+      if (DEBUG) System.err.println("[OSRM] durations parsed: " + i);
+    }
+
+    return new Route(dist, dur, lats, lons, seg);
+  }
+
+  /** GeoJSON {@code geometry.coordinates} [lon,lat] pairs → {lats, lons}. */
+  private static double[][] parseGeoJsonCoords(String json, int geomKey) {
     int coordKey = json.indexOf("\"coordinates\"", geomKey);
     if (coordKey < 0) throw new IllegalStateException("No coordinates key");
     int start = json.indexOf('[', coordKey);
@@ -99,8 +177,8 @@ public final class OsrmClient {
     // [ lon , lat ] pairs — exclude commas from BOTH tokens
     Pattern pair = Pattern.compile("\\[\\s*([^\\],\\s]+)\\s*,\\s*([^\\],\\s]+)\\s*\\]");
     Matcher pm = pair.matcher(coordsSection);
-    List<double[]> pts = new ArrayList<>();
-    int pairCount = 0;
+    double[] lats = new double[16], lons = new double[16];
+    int n = 0;
     while (pm.find()) {
       String sx = pm.group(1), sy = pm.group(2);
       double lon, lat;
@@ -115,32 +193,11 @@ public final class OsrmClient {
         }
         throw nfe;
       }
-      pts.add(new double[]{lat, lon});
-      pairCount++;
+      if (n == lats.length) { lats = Arrays.copyOf(lats, n * 2); lons = Arrays.copyOf(lons, n * 2); }
+      lats[n] = lat; lons[n] = lon; n++;
     }
-    if (DEBUG) System.err.println("[OSRM] matched pairs: " + pairCount);
-    if (pts.isEmpty()) throw new IllegalStateException("No coordinate pairs found");
-
-    // durations from first leg's annotation.duration
-    double[] seg = new double[Math.max(0, pts.size() - 1)];
-    Pattern ann = Pattern.compile("\"annotation\"\\s*:\\s*\\{[^}]*?\"duration\"\\s*:\\s*\\[(.*?)]", Pattern.DOTALL);
-    Matcher am = ann.matcher(json);
-    if (am.find()) {
-      String arr = am.group(1);
-      Matcher num = Pattern.compile("([-0-9.Ee+]+)").matcher(arr);
-      int i = 0;
-      while (num.find() && i < seg.length) {
-        String tok = num.group(1);
-        try { seg[i++] = parseNum(tok); }
-        catch (NumberFormatException nfe) {
-          if (DEBUG) System.err.println("[OSRM] BAD duration token: " + tok);
-          throw nfe;
-        }
-      }
-      if (DEBUG) System.err.println("[OSRM] durations parsed: " + i);
-    }
-
-    return new Route(dist, dur, pts, seg);
+    if (DEBUG) System.err.println("[OSRM] matched pairs: " + n);
+    return new double[][]{ Arrays.copyOf(lats, n), Arrays.copyOf(lons, n) };
   }
 
   private static double extractNumber(String json, String pattern) {
@@ -151,6 +208,10 @@ public final class OsrmClient {
     return Double.NaN;
   }
 
+  static String stripSlash(String url) {
+    return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+  }
+
   /** Strip trailing commas/whitespace and any non-numeric chars except sign, dot, exponent. */
   private static double parseNum(String s) {
     String cleaned = s.trim().replaceAll("[,]+$", "");
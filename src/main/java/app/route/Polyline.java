@@ -0,0 +1,100 @@
+package app.route;
+
+/**
+ * Google/OSRM encoded polyline codec (delta + zig-zag + 5-bit varint, printable ASCII).
+ * Decoding works straight off a CharSequence (e.g. the raw HTTP body) into primitive arrays, so
+ * no substring or boxing is needed. A backslash (value 29) is an ordinary encoded character; only
+ * the {@code jsonEscaped} variants read JSON's escaped pair as one, for geometry still inside a JSON body.
+ */
+public final class Polyline {
+  private Polyline(){}
+
+  /** OSRM {@code geometries=polyline6}. */
+  public static final int PRECISION6 = 6;
+
+  /** Number of points encoded in s[from,to). */
+  public static int count(CharSequence s, int from, int to) { return count(s, from, to, false); }
+
+  /** Like {@link #count(CharSequence, int, int)}; jsonEscaped: s is still JSON-escaped (a backslash pair is one backslash). */
+  public static int count(CharSequence s, int from, int to, boolean jsonEscaped) {
+    int values = 0;
+    for (int i = from; i < to; i++) {
+      char ch = s.charAt(i);
+      if (jsonEscaped && ch == '\\') ch = s.charAt(++i);
+      if (((ch - 63) & 0x20) == 0) values++;
+    }
+    return values / 2;
+  }
+
+  /** Decode s[from,to) into lats/lons (sized via {@link #count}); returns points written. */
+  public static int decode(CharSequence s, int from, int to, int precision, double[] lats, double[] lons) {
+    return decode(s, from, to, precision, false, lats, lons);
+  }
+
+  /** Like {@link #decode(CharSequence, int, int, int, double[], double[])}, optionally undoing JSON escapes. */
+  public static int decode(CharSequence s, int from, int to, int precision, boolean jsonEscaped, double[] lats, double[] lons) {
+    double f = factor(precision);
+    long lat = 0, lon = 0;
+    int n = 0, i = from;
+    while (i < to && n < lats.length) {
+      long v = 0; int shift = 0, b;
+      do {
+        char ch = s.charAt(i++);
+        if (jsonEscaped && ch == '\\') ch = s.charAt(i++);
+        b = ch - 63;
+        v |= (long)(b & 0x1f) << shift;
+        shift += 5;
+      } while (b >= 0x20);
+      lat += (v >>> 1) ^ -(v & 1);
+
+      v = 0; shift = 0;
+      do {
+        char ch = s.charAt(i++);
+        if (jsonEscaped && ch == '\\') ch = s.charAt(i++);
+        b = ch - 63;
+        v |= (long)(b & 0x1f) << shift;
+        shift += 5;
+      } while (b >= 0x20);
+      lon += (v >>> 1) ^ -(v & 1);
+
+      lats[n] = lat / f;
+      lons[n] = lon / f;
+      n++;
+    }
+    return n;
+  }
+
+  /** Convenience: decode a whole plain (unescaped) string into {lats, lons}. */
+  public static double[][] decode(String s, int precision) {
+    int n = count(s, 0, s.length());
+    double[] lats = new double[n], lons = new double[n];
+    decode(s, 0, s.length(), precision, lats, lons);
+    return new double[][]{ lats, lons };
+  }
+
+  public static String encode(double[] lats, double[] lons, int precision) {
+    double f = factor(precision);
+    StringBuilder sb = new StringBuilder(lats.length * 8);
+    long pLat = 0, pLon = 0;
+    for (int i = 0; i < lats.length; i++) {
+      long lat = Math.round(lats[i] * f), lon = Math.round(lons[i] * f);
+      put(sb, lat - pLat);
+      put(sb, lon - pLon);
+      pLat = lat; pLon = lon;
+    }
+    return sb.toString();
+  }
+
+  private static void put(StringBuilder sb, long delta) {
+    long v = (delta << 1) ^ (delta >> 63);
+    while (v >= 0x20) {
+      sb.append((char)((0x20 | (v & 0x1f)) + 63));
+      v >>>= 5;
+    }
+    sb.append((char)(v + 63));
+  }
+
+  private static double factor(int precision) {
+    return precision == 6 ? 1e6 : precision == 5 ? 1e5 : Math.pow(10, precision);
+  }
+}
@@ -0,0 +1,133 @@
+package app.route;
+
+import app.route.OsrmClient.Route;
+
+/**
+ * Position lookup along a route. Cumulative time and distance are computed once; each query is a
+ * binary search plus linear interpolation inside the segment, writing into a caller-owned
+ * {@link Position} so hot loops don't allocate.
+ */
+public final class RouteCursor {
+  /** Mutable query result; reuse one per caller. */
+  public static final class Position {
+    public double lat, lon, headingDeg;
+    public double elapsedS, remainingS, distanceM, remainingM;
+    /** Segment index i (between vertex i and i+1). */
+    public int segment;
+  }
+
+  @FunctionalInterface
+  public interface VertexVisitor { void visit(int i, double lat, double lon, double elapsedS, double distanceM); }
+
+  private final double[] lats, lons, cumS, cumM;
+
+  public RouteCursor(Route r) {
+    this.lats = r.lats();
+    this.lons = r.lons();
+    this.cumM = r.cumulativeMeters();
+    double[] s = r.cumulativeSeconds();
+    int n = s.length;
+    // no per-segment durations: spread the total duration by distance
+    if (n > 1 && s[n-1] <= 0 && r.durationS() > 0 && cumM[n-1] > 0) {
+      double k = r.durationS() / cumM[n-1];
+      for (int i = 0; i < n; i++) s[i] = cumM[i] * k;
+    }
+    this.cumS = s;
+  }
+
+  public int size() { return lats.length; }
+  public double totalSeconds() { return cumS.length == 0 ? 0 : cumS[cumS.length-1]; }
+  public double totalMeters()  { return cumM.length == 0 ? 0 : cumM[cumM.length-1]; }
+  public double secondsAt(int vertex) { return cumS[vertex]; }
+  public double metersAt(int vertex)  { return cumM[vertex]; }
+
+  /** Segment containing elapsed time t (clamped to the route). */
+  public int segmentAtTime(double t)     { return segmentOf(cumS, t); }
+  public int segmentAtDistance(double m) { return segmentOf(cumM, m); }
+
+  public Position atTime(double t, Position out) {
+    int i = segmentOf(cumS, t);
+    return fill(i, fraction(cumS, i, t), out);
+  }
+
+  public Position atDistance(double m, Position out) {
+    int i = segmentOf(cumM, m);
+    return fill(i, fraction(cumM, i, m), out);
+  }
+
+  /** Position at fraction f ∈ [0,1] of segment i (e.g. a snapped fix). */
+  public Position atSegment(int i, double f, Position out) {
+    return fill(Math.max(0, Math.min(i, Math.max(0, lats.length - 2))), Math.max(0, Math.min(1, f)), out);
+  }
+
+  /** Visit the vertices whose elapsed time lies in [fromS, toS]. */
+  public void forEachInTime(double fromS, double toS, VertexVisitor v) {
+    if (lats.length == 0) return;
+    int i = lowerBound(cumS, fromS);
+    for (; i < lats.length && cumS[i] <= toS; i++) v.visit(i, lats[i], lons[i], cumS[i], cumM[i]);
+  }
+
+  /** Visit the vertices whose along-route distance lies in [fromM, toM]. */
+  public void forEachInDistance(double fromM, double toM, VertexVisitor v) {
+    if (lats.length == 0) return;
+    int i = lowerBound(cumM, fromM);
+    for (; i < lats.length && cumM[i] <= toM; i++) v.visit(i, lats[i], lons[i], cumS[i], cumM[i]);
+  }
+
+  private Position fill(int i, double f, Position out) {
+    int n = lats.length;
+    if (n == 0) return out;
+    if (n == 1) {
+      out.lat = lats[0]; out.lon = lons[0]; out.headingDeg = 0; out.segment = 0;
+      out.elapsedS = out.remainingS = out.distanceM = out.remainingM = 0;
+      return out;
+    }
+    out.segment = i;
+    out.lat = lats[i] + (lats[i+1] - lats[i]) * f;
+    out.lon = lons[i] + (lons[i+1] - lons[i]) * f;
+    out.elapsedS  = cumS[i] + (cumS[i+1] - cumS[i]) * f;
+    out.distanceM = cumM[i] + (cumM[i+1] - cumM[i]) * f;
+    out.remainingS = cumS[n-1] - out.elapsedS;
+    out.remainingM = cumM[n-1] - out.distanceM;
+    out.headingDeg = bearing(lats[i], lons[i], lats[i+1], lons[i+1]);
+    return out;
+  }
+
+  /** Largest i in [0, n-2] with cum[i] <= x. */
+  private static int segmentOf(double[] cum, double x) {
+    int n = cum.length;
+    if (n < 2) return 0;
+    int lo = 0, hi = n - 2;
+    while (lo < hi) {
+      int mid = (lo + hi + 1) >>> 1;
+      if (cum[mid] <= x) lo = mid; else hi = mid - 1;
+    }
+    return lo;
+  }
+
+  /** First i with cum[i] >= x (n if none). */
+  static int lowerBound(double[] cum, double x) {
+    int lo = 0, hi = cum.length;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (cum[mid] < x) lo = mid + 1; else hi = mid;
+    }
+    return lo;
+  }
+
+  private static double fraction(double[] cum, int i, double x) {
+    if (cum.length < 2) return 0;
+    double span = cum[i+1] - cum[i];
+    if (span <= 0) return 0;
+    return Math.max(0, Math.min(1, (x - cum[i]) / span));
+  }
+
+  /** Initial great-circle bearing, degrees clockwise from north. */
+  static double bearing(double lat1, double lon1, double lat2, double lon2) {
+    double p1 = Math.toRadians(lat1), p2 = Math.toRadians(lat2), dl = Math.toRadians(lon2 - lon1);
+    double y = Math.sin(dl) * Math.cos(p2);
+    double x = Math.cos(p1) * Math.sin(p2) - Math.sin(p1) * Math.cos(p2) * Math.cos(dl);
+    double deg = Math.toDegrees(Math.atan2(y, x));
+    return deg < 0 ? deg + 360 : deg;
+  }
+}
@@ -0,0 +1,10 @@
+package app.route;
+
+import app.route.OsrmClient.Route;
+
+import java.util.List;
+
+/** Anything that can route through an ordered list of [lat,lon] waypoints. */
+public interface Router {
+  Route routeVia(List<double[]> waypoints) throws Exception;
+}
@@ -3,28 +3,40 @@ package app.route;
 import java.util.ArrayList;
 import java.util.List;
 
-/** Pick indices near every targetHour (3h default) within a ±windowMin window. */
+/** Pick stop targets every targetHour (3h default) within a ±windowMin window. */
 public final class StopPlanner {
   private StopPlanner(){}
 
+  /** Vertex indices nearest each target time (binary search per target). */
   public static List<Integer> planStopsByTime(double[] cumulativeSeconds, double everyHours, double windowMinutes) {
     List<Integer> out = new ArrayList<>();
-    if (cumulativeSeconds == null || cumulativeSeconds.length == 0) return out;
-    double total = cumulativeSeconds[cumulativeSeconds.length - 1];
+    if (cumulativeSeconds == null || cumulativeSeconds.length < 3) return out;
+    int n = cumulativeSeconds.length;
+    double total = cumulativeSeconds[n - 1];
     double target = everyHours * 3600.0;
     double win = windowMinutes * 60.0;
 
     while (target < total - win) { // if trip is ~3h, we won't schedule a stop
-      int bestIdx = -1;
-      double bestErr = Double.POSITIVE_INFINITY;
-      for (int i = 1; i < cumulativeSeconds.length-1; i++) { // avoid endpoints
-        double err = Math.abs(cumulativeSeconds[i] - target);
-        if (err < bestErr) { bestErr = err; bestIdx = i; }
-      }
-      if (bestIdx >= 0 && bestErr <= win) out.add(bestIdx);
+      // nearest interior vertex (avoid endpoints); ties go to the earlier one
+      int hi = Math.max(1, Math.min(n - 2, RouteCursor.lowerBound(cumulativeSeconds, target)));
+      int lo = Math.max(1, hi - 1);
+      lo = Math.max(1, RouteCursor.lowerBound(cumulativeSeconds, cumulativeSeconds[lo])); // earliest of equal times
+      int best = Math.abs(cumulativeSeconds[lo] - target) <= Math.abs(cumulativeSeconds[hi] - target) ? lo : hi;
+      if (Math.abs(cumulativeSeconds[best] - target) <= win) out.add(best);
       target += everyHours * 3600.0;
     }
     return out;
   }
-}
 
+  /** Elapsed-time targets every N hours; positions come from {@link RouteCursor#atTime} (interpolated, not vertex-snapped). */
+  public static double[] planStopTimes(RouteCursor cursor, double everyHours, double windowMinutes) {
+    double total = cursor.totalSeconds();
+    double step = everyHours * 3600.0, win = windowMinutes * 60.0;
+    if (step <= 0) return new double[0];
+    int k = 0;
+    for (double t = step; t < total - win; t += step) k++;
+    double[] out = new double[k];
+    for (int i = 0; i < k; i++) out[i] = step * (i + 1);
+    return out;
+  }
+}
@@ -0,0 +1,100 @@
+package app.route;
+
+import app.geo.Geocoder;
+import app.osm.PoiSource;
+import app.route.OsrmClient.Route;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** The planning pipeline behind "Go": geocode → base route → timed stop targets → POI pick → via route. */
+public final class TripPlanner {
+  public record Stop(double lat, double lon, String label, double etaS) {}
+  public record Plan(double destLat, double destLon, Route base, Route route, List<Stop> stops) {
+    /** Stops as [lat,lon] pairs, in route order. */
+    public double[][] stopPoints() {
+      double[][] out = new double[stops.size()][];
+      for (int i = 0; i < out.length; i++) out[i] = new double[]{ stops.get(i).lat(), stops.get(i).lon() };
+      return out;
+    }
+  }
+
+  private final Geocoder geocoder;
+  private final Router router;
+  private final PoiSource pois;
+  private double everyHours = 3.0, windowMinutes = 15.0;
+
+  public TripPlanner(Geocoder geocoder, Router router, PoiSource pois) {
+    this.geocoder = geocoder; this.router = router; this.pois = pois;
+  }
+
+  public TripPlanner stopEvery(double hours, double windowMinutes) {
+    this.everyHours = hours; this.windowMinutes = windowMinutes;
+    return this;
+  }
+
+  public Plan plan(double startLat, double startLon, String destination) throws Exception {
+    return plan(startLat, startLon, destination, s -> {});
+  }
+
+  /** Like {@link #plan(double, double, String)}; onStop sees each stop as soon as it is picked. */
+  public Plan plan(double startLat, double startLon, String destination, Consumer<Stop> onStop) throws Exception {
+    var p = geocoder.geocode(destination);
+    return plan(startLat, startLon, p.lat(), p.lon(), onStop);
+  }
+
+  public Plan plan(double startLat, double startLon, double destLat, double destLon) throws Exception {
+    return plan(startLat, startLon, destLat, destLon, s -> {});
+  }
+
+  public Plan plan(double startLat, double startLon, double destLat, double destLon, Consumer<Stop> onStop) throws Exception {
+    double[] start = { startLat, startLon }, dest = { destLat, destLon };
+
+    // 1) base route (no stops) to measure timings
+    Route base = router.routeVia(List.of(start, dest));
+
+    // 2) stop targets ~ every N hours on the base route, interpolated by the cursor
+    RouteCursor cursor = new RouteCursor(base);
+    double[] targets = StopPlanner.planStopTimes(cursor, everyHours, windowMinutes);
+
+    // 3) for each target, pick a practical POI near that point (expand radius if needed)
+    List<Stop> stops = new ArrayList<>(targets.length);
+    RouteCursor.Position at = new RouteCursor.Position();
+    for (double t : targets) {
+      cursor.atTime(t, at);
+      var cands = pois.findNearbyStops(at.lat, at.lon, 2500, 5);
+      if (cands.isEmpty()) cands = pois.findNearbyStops(at.lat, at.lon, 5000, 5);
+      Stop stop;
+      if (!cands.isEmpty()) {
+        var s = cands.get(0);
+        stop = new Stop(s.lat(), s.lon(), s.name() + " (" + s.kind() + ")", t);
+      } else {
+        stop = new Stop(at.lat, at.lon, "Planned stop", t);
+      }
+      stops.add(stop);
+      onStop.accept(stop);
+    }
+
+    // 4) re-route VIA the chosen stops so the line passes through them
+    if (stops.isEmpty()) return new Plan(destLat, destLon, base, base, stops);
+    List<double[]> waypoints = new ArrayList<>(stops.size() + 2);
+    waypoints.add(start);
+    for (Stop s : stops) waypoints.add(new double[]{ s.lat(), s.lon() });
+    waypoints.add(dest);
+    return new Plan(destLat, destLon, base, router.routeVia(waypoints), stops);
+  }
+
+  /**
+   * Re-plan from the current position through the stops not yet passed. Only the first leg is
+   * new; the legs between remaining stops come from the router's leg cache when it is a {@link LegRouter}.
+   */
+  public Plan replanFrom(Plan plan, double lat, double lon, int stopsPassed) throws Exception {
+    List<Stop> remaining = List.copyOf(plan.stops().subList(Math.min(stopsPassed, plan.stops().size()), plan.stops().size()));
+    List<double[]> waypoints = new ArrayList<>(remaining.size() + 2);
+    waypoints.add(new double[]{ lat, lon });
+    for (Stop s : remaining) waypoints.add(new double[]{ s.lat(), s.lon() });
+    waypoints.add(new double[]{ plan.destLat(), plan.destLon() });
+    return new Plan(plan.destLat(), plan.destLon(), plan.base(), router.routeVia(waypoints), remaining);
+  }
+}
@@ -0,0 +1,120 @@
+package app.session;
+
+import app.route.OsrmClient.Route;
+import app.route.TripPlanner.Plan;
+import app.route.TripPlanner.Stop;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compact binary snapshot of the UI session (map view, start, destination, route, stops and time
+ * labels) so a restart can paint immediately before any network call. Route geometry is stored
+ * as polyline6, segment durations as float32. Writes go to a temp file and are moved into place.
+ */
+public final class SessionStore {
+  private static final int MAGIC = 0x4D595753; // "MYWS"
+  private static final int VERSION = 1;
+
+  /** plan may be null (nothing routed yet); timeLabels parallel plan.stops(). */
+  public record Session(long savedAtMs, double centerLat, double centerLon, double zoom,
+                        double startLat, double startLon, Plan plan, List<String> timeLabels) {}
+
+  private final Path file;
+
+  public SessionStore(Path file) { this.file = file; }
+
+  /** Snapshot file next to a database file, e.g. myway.duckdb → myway.session. */
+  public static SessionStore beside(String dbFile) {
+    Path db = Path.of(dbFile).toAbsolutePath();
+    String name = db.getFileName().toString();
+    int dot = name.lastIndexOf('.');
+    return new SessionStore(db.resolveSibling((dot > 0 ? name.substring(0, dot) : name) + ".session"));
+  }
+
+  public Path file() { return file; }
+
+  public void save(Session s) throws IOException {
+    Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(s.savedAtMs());
+      out.writeDouble(s.centerLat()); out.writeDouble(s.centerLon()); out.writeDouble(s.zoom());
+      out.writeDouble(s.startLat());  out.writeDouble(s.startLon());
+      Plan p = s.plan();
+      out.writeBoolean(p != null);
+      if (p != null) {
+        out.writeDouble(p.destLat()); out.writeDouble(p.destLon());
+        Route r = p.route();
+        out.writeDouble(r.distanceM()); out.writeDouble(r.durationS());
+        writeString(out, r.encodedGeometry());
+        double[] seg = r.segmentDurationsS() == null ? new double[0] : r.segmentDurationsS();
+        out.writeInt(seg.length);
+        for (double d : seg) out.writeFloat((float) d);
+        out.writeInt(p.stops().size());
+        for (int i = 0; i < p.stops().size(); i++) {
+          Stop st = p.stops().get(i);
+          out.writeDouble(st.lat()); out.writeDouble(st.lon()); out.writeDouble(st.etaS());
+          writeString(out, st.label());
+          writeString(out, s.timeLabels() != null && i < s.timeLabels().size() ? s.timeLabels().get(i) : "");
+        }
+      }
+    }
+    try {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  /** Null when there is no snapshot or it is unreadable/from another version. */
+  public Session load() {
+    if (!Files.isRegularFile(file)) return null;
+    try {
+      ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file));
+      if (in.remaining() < 8 || in.getInt() != MAGIC || in.getInt() != VERSION) return null;
+      long saved = in.getLong();
+      double cLat = in.getDouble(), cLon = in.getDouble(), zoom = in.getDouble();
+      double sLat = in.getDouble(), sLon = in.getDouble();
+      if (in.get() == 0) return new Session(saved, cLat, cLon, zoom, sLat, sLon, null, List.of());
+
+      double dLat = in.getDouble(), dLon = in.getDouble();
+      double dist = in.getDouble(), dur = in.getDouble();
+      String geom = readString(in);
+      double[] seg = new double[in.getInt()];
+      for (int i = 0; i < seg.length; i++) seg[i] = in.getFloat();
+      Route r = Route.fromEncoded(dist, dur, geom, seg);
+      if (r.size() != seg.length + 1)
+        throw new IllegalStateException("geometry has " + r.size() + " points for " + seg.length + " segments");
+      int n = in.getInt();
+      List<Stop> stops = new ArrayList<>(n);
+      List<String> labels = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        double lat = in.getDouble(), lon = in.getDouble(), eta = in.getDouble();
+        stops.add(new Stop(lat, lon, readString(in), eta));
+        labels.add(readString(in));
+      }
+      return new Session(saved, cLat, cLon, zoom, sLat, sLon, new Plan(dLat, dLon, r, r, stops), labels);
+    } catch (Exception corrupt) {
+      System.err.println("[SESSION] ignoring unreadable snapshot " + file + ": " + corrupt);
+      return null;
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    byte[] b = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+    out.writeInt(b.length);
+    out.write(b);
+  }
+
+  private static String readString(ByteBuffer in) {
+    byte[] b = new byte[in.getInt()];
+    in.get(b);
+    return new String(b, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,4 @@
+package app.track;
+
+/** One position fix; timeMs is epoch millis (0 when the source has no timestamps). */
+public record Fix(double lat, double lon, long timeMs) {}
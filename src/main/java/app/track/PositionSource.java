@@ -0,0 +1,11 @@
+package app.track;
+
+import java.util.function.Consumer;
+
+/** Pluggable stream of position fixes (GPS receiver, replayed file, ...). */
+public interface PositionSource extends AutoCloseable {
+  /** Deliver fixes to sink until the source ends or is closed; blocks the calling thread. */
+  void run(Consumer<Fix> sink) throws Exception;
+
+  @Override void close();
+}
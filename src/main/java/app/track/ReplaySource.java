@@ -0,0 +1,77 @@
+package app.track;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.*;
+
+/** Replays a recorded GPX track or CSV (lat,lon[,epochMs]) file, optionally paced in (scaled) real time. */
+public final class ReplaySource implements PositionSource {
+  private final List<Fix> fixes;
+  private final double speedup;
+  private volatile boolean closed;
+
+  /** speedup <= 0 replays as fast as possible; 1 = recorded pace. */
+  public ReplaySource(List<Fix> fixes, double speedup) { this.fixes = List.copyOf(fixes); this.speedup = speedup; }
+
+  public static ReplaySource open(Path file, double speedup) throws Exception {
+    String body = Files.readString(file, StandardCharsets.UTF_8);
+    boolean gpx = file.getFileName().toString().toLowerCase().endsWith(".gpx");
+    return new ReplaySource(gpx ? parseGpx(body) : parseCsv(body), speedup);
+  }
+
+  public List<Fix> fixes() { return fixes; }
+
+  @Override public void run(Consumer<Fix> sink) throws InterruptedException {
+    long prev = -1;
+    for (Fix f : fixes) {
+      if (closed) return;
+      if (speedup > 0 && prev > 0 && f.timeMs() > prev) Thread.sleep((long) ((f.timeMs() - prev) / speedup));
+      prev = f.timeMs();
+      sink.accept(f);
+    }
+  }
+
+  @Override public void close() { closed = true; }
+
+  /** GPX trkpt/rtept/wpt elements with optional &lt;time&gt;. */
+  static List<Fix> parseGpx(String xml) {
+    List<Fix> out = new ArrayList<>();
+    Matcher m = Pattern.compile("<(?:trkpt|rtept|wpt)\\b([^>]*?)(?:/>|>(.*?)</(?:trkpt|rtept|wpt)>)", Pattern.DOTALL).matcher(xml);
+    Pattern lat = Pattern.compile("\\blat\\s*=\\s*[\"']([^\"']+)[\"']");
+    Pattern lon = Pattern.compile("\\blon\\s*=\\s*[\"']([^\"']+)[\"']");
+    Pattern time = Pattern.compile("<time>\\s*([^<]+?)\\s*</time>");
+    while (m.find()) {
+      Matcher a = lat.matcher(m.group(1)), o = lon.matcher(m.group(1));
+      if (!a.find() || !o.find()) continue;
+      long t = 0;
+      if (m.group(2) != null) {
+        Matcher tm = time.matcher(m.group(2));
+        if (tm.find()) {
+          try { t = Instant.parse(tm.group(1)).toEpochMilli(); } catch (Exception ignore) {}
+        }
+      }
+      out.add(new Fix(Double.parseDouble(a.group(1)), Double.parseDouble(o.group(1)), t));
+    }
+    return out;
+  }
+
+  /** lat,lon[,epochMs] per line; header and malformed lines are skipped. */
+  static List<Fix> parseCsv(String csv) {
+    List<Fix> out = new ArrayList<>();
+    for (String line : csv.split("\\R")) {
+      String[] p = line.split("[,;\\t]");
+      if (p.length < 2) continue;
+      try {
+        double lat = Double.parseDouble(p[0].trim()), lon = Double.parseDouble(p[1].trim());
+        long t = p.length > 2 && !p[2].isBlank() ? Long.parseLong(p[2].trim()) : 0;
+        out.add(new Fix(lat, lon, t));
+      } catch (NumberFormatException skip) {}
+    }
+    return out;
+  }
+}
@@ -0,0 +1,97 @@
+package app.track;
+
+import app.route.OsrmClient.Route;
+import app.route.RouteCursor;
+
+/**
+ * Follows a vehicle along the current route: each fix is snapped through a {@link SegmentIndex},
+ * turned into progress/ETAs via a {@link RouteCursor}, and checked for leaving the route.
+ * After {@code offRouteFixes} consecutive fixes farther than {@code offRouteM} the listener's
+ * {@link Listener#onOffRoute} fires once; {@link #setRoute} re-arms it.
+ */
+public final class RouteTracker {
+  /** Progress for one fix. stopEtaS[i] is the remaining time to stop i (0 once passed). */
+  public record Progress(Fix fix, double snappedLat, double snappedLon, double offsetM,
+                         double distanceM, double remainingM, double remainingS, double[] stopEtaS, int stopsPassed) {}
+
+  public interface Listener {
+    void onProgress(Progress p);
+    void onOffRoute(Fix fix, int stopsPassed);
+  }
+
+  private final Listener listener;
+  private final double offRouteM;
+  private final int offRouteFixes;
+
+  private Route route;
+  private RouteCursor cursor;
+  private SegmentIndex index;
+  private double[] stopMeters = new double[0];
+  private final SegmentIndex.Snap snap = new SegmentIndex.Snap();
+  private final RouteCursor.Position pos = new RouteCursor.Position();
+  private int lastSegment = -1, misses = 0;
+  private double lastMeters = 0;
+  private boolean offRoute;
+
+  public RouteTracker(Listener listener) { this(listener, 75, 3); }
+
+  public RouteTracker(Listener listener, double offRouteM, int offRouteFixes) {
+    this.listener = listener; this.offRouteM = offRouteM; this.offRouteFixes = Math.max(1, offRouteFixes);
+  }
+
+  /** Switch to a (re-)planned route; stops are [lat,lon] waypoints the route passes through. */
+  public synchronized void setRoute(Route r, double[][] stops) {
+    route = r;
+    cursor = new RouteCursor(r);
+    index = new SegmentIndex(r.lats(), r.lons());
+    stopMeters = new double[stops == null ? 0 : stops.length];
+    SegmentIndex.Snap s = new SegmentIndex.Snap();
+    int hint = -1;
+    for (int i = 0; i < stopMeters.length; i++) {
+      // stops lie on the route; search wide in case OSRM snapped them to a nearby road
+      if (index.nearest(stops[i][0], stops[i][1], 2000, hint, 5000, s)) {
+        stopMeters[i] = cursor.atSegment(s.segment, s.fraction, pos).distanceM;
+        hint = s.segment;
+      } else stopMeters[i] = Double.NaN;
+    }
+    lastSegment = -1; lastMeters = 0; misses = 0; offRoute = false;
+  }
+
+  public synchronized Route route() { return route; }
+
+  /** Feed one fix. Cheap enough to call per GPS update (index lookup + O(log n) interpolation). */
+  public synchronized void accept(Fix f) {
+    if (index == null || offRoute) return;
+    boolean on = index.nearest(f.lat(), f.lon(), offRouteM, lastSegment, 2 * offRouteM, snap);
+    if (!on) {
+      if (++misses >= offRouteFixes) {
+        offRoute = true;
+        listener.onOffRoute(f, stopsPassed(lastMeters));
+      }
+      return;
+    }
+    misses = 0;
+    lastSegment = snap.segment;
+    cursor.atSegment(snap.segment, snap.fraction, pos);
+    lastMeters = pos.distanceM;
+
+    double[] eta = new double[stopMeters.length];
+    for (int i = 0; i < eta.length; i++) {
+      if (Double.isNaN(stopMeters[i]) || stopMeters[i] <= pos.distanceM) continue;
+      eta[i] = cursor.atDistance(stopMeters[i], new RouteCursor.Position()).elapsedS - pos.elapsedS;
+    }
+    listener.onProgress(new Progress(f, pos.lat, pos.lon, snap.distanceM,
+        pos.distanceM, pos.remainingM, pos.remainingS, eta, stopsPassed(pos.distanceM)));
+  }
+
+  /** Run a source to completion on the calling thread. */
+  public void follow(PositionSource source) throws Exception {
+    source.run(this::accept);
+  }
+
+  private int stopsPassed(double meters) {
+    int n = 0;
+    for (double m : stopMeters) if (!Double.isNaN(m) && m <= meters) n++;
+    return n;
+  }
+}
@@ -0,0 +1,117 @@
+package app.track;
+
+import app.geo.Geodesy;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Uniform-grid index over a polyline's segments, for snapping fixes to the route. Each segment
+ * is registered in every cell its bounding box touches; cells are stored as a sorted key array
+ * with CSR offsets, so a query is a few binary searches and a handful of segment tests with no
+ * allocation, independent of route length.
+ */
+public final class SegmentIndex {
+  /** Mutable snap result; reuse one per caller. */
+  public static final class Snap {
+    public int segment = -1;
+    /** Fraction along the segment, 0..1. */
+    public double fraction;
+    public double distanceM = Double.POSITIVE_INFINITY;
+  }
+
+  private static final long SEG_BITS = 27, SEG_MASK = (1L << SEG_BITS) - 1;
+
+  private final double[] lats, lons;
+  private final double cellDeg;
+  private final long[] cellKeys;   // sorted, unique
+  private final int[] cellStart;   // CSR offsets into segs, length cellKeys.length + 1
+  private final int[] segs;
+
+  public SegmentIndex(double[] lats, double[] lons) { this(lats, lons, 0.005, null); }
+
+  public SegmentIndex(double[] lats, double[] lons, double cellDeg) { this(lats, lons, cellDeg, null); }
+
+  /**
+   * cellDeg: grid cell edge in degrees (0.005° ≈ 550 m); at least 0.0025° so keys pack into a long.
+   * Segments whose index is set in {@code skip} are not indexed, so several polylines can be
+   * concatenated into one array without indexing the joins between them.
+   */
+  public SegmentIndex(double[] lats, double[] lons, double cellDeg, BitSet skip) {
+    if (!(cellDeg >= 0.0025)) throw new IllegalArgumentException("cellDeg too small: " + cellDeg);
+    this.lats = lats; this.lons = lons; this.cellDeg = cellDeg;
+    int nSeg = Math.max(0, lats.length - 1);
+    if (nSeg > SEG_MASK) throw new IllegalArgumentException("too many segments: " + nSeg);
+
+    // pass 1: count (cell, segment) pairs; pass 2: pack as (cellKey << SEG_BITS | seg) and sort
+    int pairs = 0;
+    for (int i = 0; i < nSeg; i++) if (skip == null || !skip.get(i)) pairs += cellsCovered(i);
+    long[] packed = new long[pairs];
+    int k = 0;
+    for (int i = 0; i < nSeg; i++) {
+      if (skip != null && skip.get(i)) continue;
+      int x0 = cx(Math.min(lons[i], lons[i+1])), x1 = cx(Math.max(lons[i], lons[i+1]));
+      int y0 = cy(Math.min(lats[i], lats[i+1])), y1 = cy(Math.max(lats[i], lats[i+1]));
+      for (int x = x0; x <= x1; x++)
+        for (int y = y0; y <= y1; y++) packed[k++] = (key(x, y) << SEG_BITS) | i;
+    }
+    Arrays.sort(packed);
+
+    segs = new int[pairs];
+    long[] keys = new long[pairs];
+    int[] start = new int[pairs + 1];
+    int cells = 0;
+    for (int p = 0; p < pairs; p++) {
+      long key = packed[p] >>> SEG_BITS;
+      if (cells == 0 || keys[cells-1] != key) { keys[cells] = key; start[cells] = p; cells++; }
+      segs[p] = (int) (packed[p] & SEG_MASK);
+    }
+    start[cells] = pairs;
+    cellKeys = Arrays.copyOf(keys, cells);
+    cellStart = Arrays.copyOf(start, cells + 1);
+  }
+
+  public int segments() { return Math.max(0, lats.length - 1); }
+
+  /** Nearest segment within maxM of (lat,lon); returns false (out.segment = -1) when none. */
+  public boolean nearest(double lat, double lon, double maxM, Snap out) {
+    return nearest(lat, lon, maxM, -1, 0, out);
+  }
+
+  /**
+   * Like {@link #nearest(double, double, double, Snap)}, but candidates more than two segments
+   * behind {@code hintSegment} pay {@code backPenaltyM}, which keeps snapping monotonic where a
+   * route doubles back on itself.
+   */
+  public boolean nearest(double lat, double lon, double maxM, int hintSegment, double backPenaltyM, Snap out) {
+    out.segment = -1; out.fraction = 0; out.distanceM = Double.POSITIVE_INFINITY;
+    double best = Double.POSITIVE_INFINITY;
+    double dLat = maxM / 111_320.0, dLon = dLat / Math.max(0.01, Math.cos(Math.toRadians(lat)));
+    int x0 = cx(lon - dLon), x1 = cx(lon + dLon), y0 = cy(lat - dLat), y1 = cy(lat + dLat);
+    for (int x = x0; x <= x1; x++) {
+      for (int y = y0; y <= y1; y++) {
+        int c = Arrays.binarySearch(cellKeys, key(x, y));
+        if (c < 0) continue;
+        for (int p = cellStart[c]; p < cellStart[c+1]; p++) {
+          int s = segs[p];
+          double t = Geodesy.segmentFraction(lat, lon, lats[s], lons[s], lats[s+1], lons[s+1]);
+          double d = Geodesy.haversineM(lat, lon, lats[s] + (lats[s+1] - lats[s]) * t, lons[s] + (lons[s+1] - lons[s]) * t);
+          if (d > maxM) continue;
+          double score = d + (hintSegment >= 0 && s < hintSegment - 2 ? backPenaltyM : 0);
+          if (score < best) { best = score; out.segment = s; out.fraction = t; out.distanceM = d; }
+        }
+      }
+    }
+    return out.segment >= 0;
+  }
+
+  private int cellsCovered(int i) {
+    int x0 = cx(Math.min(lons[i], lons[i+1])), x1 = cx(Math.max(lons[i], lons[i+1]));
+    int y0 = cy(Math.min(lats[i], lats[i+1])), y1 = cy(Math.max(lats[i], lats[i+1]));
+    return (x1 - x0 + 1) * (y1 - y0 + 1);
+  }
+
+  private int cx(double lon) { return (int) Math.floor((lon + 180.0) / cellDeg); }
+  private int cy(double lat) { return (int) Math.floor((lat + 90.0) / cellDeg); }
+  private static long key(int x, int y) { return ((long) x << 18) | (y & 0x3FFFF); }
+}
@@ -1,18 +1,28 @@
 package app.ui;
 
 import app.route.StopsLayer.StopPoint;
-import com.gluonhq.maps.MapPoint;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
-import javafx.scene.Node;
 import javafx.scene.control.*;
 import javafx.scene.layout.*;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Consumer;
 
+/**
+ * Stop/candidate list backed by a virtualized ListView: only the visible rows own nodes, and
+ * cells are reused while scrolling, so thousands of rows cost the same as a screenful.
+ */
 public class StopListPane extends VBox {
-  private final VBox list = new VBox(6);
+  /** One list entry: the stop and its "when" label (e.g. "~3.0h"). */
+  public record Row(StopPoint stop, String when) {}
+
+  private final ObservableList<Row> rows = FXCollections.observableArrayList();
+  private final ListView<Row> list = new ListView<>(rows);
   private Consumer<StopPoint> onSelect;
 
   public StopListPane() {
@@ -21,40 +31,79 @@ public class StopListPane extends VBox {
     setSpacing(8);
     Label title = new Label("Stops");
     title.setStyle("-fx-font-weight:bold;");
-    getChildren().addAll(title, new ScrollPane(list){{
-      setFitToWidth(true);
-      setPrefViewportHeight(300);
-      setStyle("-fx-background-color:transparent;");
-    }});
+
+    list.setFixedCellSize(40); // uniform rows: no per-row measuring
+    list.setPrefHeight(300);
+    list.setStyle("-fx-background-color:transparent;");
+    list.setCellFactory(lv -> new StopCell());
+    VBox.setVgrow(list, Priority.ALWAYS);
+    getChildren().addAll(title, list);
   }
 
   public void setOnSelect(Consumer<StopPoint> handler) { this.onSelect = handler; }
 
+  /** Observable model behind the list; mutate on the FX thread. */
+  public ObservableList<Row> rows() { return rows; }
+
+  /** Replace all rows in one change. Safe to call from any thread. */
   public void setStops(List<StopPoint> stops, List<String> timeLabels) {
-    list.getChildren().clear();
+    List<Row> next = new ArrayList<>(stops.size());
     for (int i=0;i<stops.size();i++) {
-      StopPoint sp = stops.get(i);
       String when = (timeLabels != null && i < timeLabels.size()) ? timeLabels.get(i) : "";
-      HBox row = new HBox(8);
+      next.add(new Row(stops.get(i), when));
+    }
+    onFx(() -> rows.setAll(next));
+  }
+
+  /** Append rows as an async planner produces them. Safe to call from any thread. */
+  public void addStops(List<Row> more) {
+    List<Row> copy = List.copyOf(more);
+    onFx(() -> rows.addAll(copy));
+  }
+
+  public void addStop(StopPoint sp, String when) { addStops(List.of(new Row(sp, when == null ? "" : when))); }
+
+  public void clear() { onFx(rows::clear); }
+
+  /** Collapse/expand with layout participation. */
+  public void setCollapsed(boolean collapsed) {
+    setVisible(!collapsed);
+    setManaged(!collapsed);
+  }
+
+  private static void onFx(Runnable r) {
+    if (Platform.isFxApplicationThread()) r.run(); else Platform.runLater(r);
+  }
+
+  /** Row nodes are built once per cell and rebound in updateItem. */
+  private final class StopCell extends ListCell<Row> {
+    private final HBox row = new HBox(8);
+    private final Label idx = new Label();
+    private final Label name = new Label();
+    private final Label t = new Label();
+    private final Button go = new Button("View");
+
+    StopCell() {
       row.setAlignment(Pos.CENTER_LEFT);
-      Label idx = new Label(String.valueOf(i+1));
       idx.setStyle("-fx-background-color:#0ea5e9; -fx-text-fill:white; -fx-padding:2 6; -fx-background-radius:10;");
-      Label name = new Label(sp.label);
-      Label t = new Label(when);
       t.setStyle("-fx-text-fill:#475569; -fx-font-size:11px;");
       Region spacer = new Region(); HBox.setHgrow(spacer, Priority.ALWAYS);
-      Button go = new Button("View");
-      go.setOnAction(e -> { if (onSelect != null) onSelect.accept(sp); });
+      go.setOnAction(e -> {
+        Row r = getItem();
+        if (r != null && onSelect != null) onSelect.accept(r.stop());
+      });
       row.getChildren().addAll(idx, name, spacer, t, go);
       row.setStyle("-fx-padding:6; -fx-background-color:rgba(0,0,0,0.02); -fx-background-radius:8;");
-      list.getChildren().add(row);
+      setContentDisplay(ContentDisplay.GRAPHIC_ONLY);
     }
-  }
 
-  /** Collapse/expand with layout participation. */
-  public void setCollapsed(boolean collapsed) {
-    setVisible(!collapsed);
-    setManaged(!collapsed);
+    @Override protected void updateItem(Row item, boolean empty) {
+      super.updateItem(item, empty);
+      if (empty || item == null) { setGraphic(null); return; }
+      idx.setText(String.valueOf(getIndex()+1));
+      name.setText(item.stop().label);
+      t.setText(item.when());
+      setGraphic(row);
+    }
   }
 }
-
@@ -0,0 +1,61 @@
+package app;
+
+import app.geo.BulkGeocoder;
+import app.geo.Geocoder;
+import app.geo.NominatimGeocoder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BulkGeocoderTest {
+  static class CountingGeocoder implements Geocoder {
+    final AtomicInteger calls = new AtomicInteger();
+    final Set<String> seen = ConcurrentHashMap.newKeySet();
+    @Override public Pt geocode(String address) {
+      calls.incrementAndGet();
+      assertTrue(seen.add(BulkGeocoder.normalize(address)), "duplicate lookup: " + address);
+      if (address.contains("nowhere")) throw new IllegalStateException("No result");
+      return new Pt(38.0 + address.length() / 100.0, -77.0);
+    }
+  }
+
+  @Test void dedupesPacesAndReportsPerItemErrors() {
+    var g = new CountingGeocoder();
+    List<String> in = new ArrayList<>();
+    for (int i = 0; i < 20; i++) { in.add(i + " Main St"); in.add("  " + i + "  MAIN st "); }
+    in.add("nowhere at all");
+
+    long t0 = System.nanoTime();
+    List<Geocoder.Result> out;
+    try (var s = new BulkGeocoder(g, 100, 5, 4).geocodeAll(in)) { out = s.toList(); }
+    double secs = (System.nanoTime() - t0) / 1e9;
+
+    assertEquals(in.size(), out.size());
+    assertEquals(21, g.calls.get());
+    assertEquals(1, out.stream().filter(r -> !r.ok()).count());
+    assertTrue(secs >= (21 - 5) / 100.0 * 0.9, "paced by the bucket, took " + secs + "s");
+  }
+
+  @Test void errorInGeocoderFailsTheStreamInsteadOfHanging() {
+    Geocoder g = address -> { throw new AssertionError("boom: " + address); };
+    try (var s = new BulkGeocoder(g, 0, 1, 2).geocodeAll(List.of("a", "b", "c"))) {
+      assertThrows(AssertionError.class, s::toList);
+    }
+  }
+
+  @Test void nominatimBulkAgainstLocalEndpoint() throws Exception {
+    try (var up = new LocalUpstream()) {
+      var g = new NominatimGeocoder(up.nominatimUrl()).withRate(0, 8);
+      List<String> in = List.of("Charlotte, NC", "charlotte,  nc", "Raleigh, NC", "Richmond, VA");
+      try (var s = g.geocodeAll(in)) {
+        assertTrue(s.allMatch(Geocoder.Result::ok));
+      }
+      assertEquals(3, up.nominatimHits.get());
+    }
+  }
+}
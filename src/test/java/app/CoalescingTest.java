@@ -0,0 +1,103 @@
+package app;
+
+import app.geo.CoalescingGeocoder;
+import app.geo.Geocoder;
+import app.net.SingleFlight;
+import app.osm.CoalescingPoiSource;
+import app.osm.OverpassClient.Poi;
+import app.osm.PoiSource;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CoalescingTest {
+  interface IndexedCall<T> { T call(int caller) throws Exception; }
+
+  /** Run n callers that all start together. */
+  static <T> List<T> burst(int n, Callable<T> call) throws Exception {
+    return burst(n, i -> call.call());
+  }
+
+  /** Like {@link #burst(int, Callable)}; each caller gets its index 0..n-1. */
+  static <T> List<T> burst(int n, IndexedCall<T> call) throws Exception {
+    ExecutorService pool = Executors.newFixedThreadPool(n);
+    CyclicBarrier go = new CyclicBarrier(n);
+    List<Future<T>> fs = new ArrayList<>();
+    for (int i = 0; i < n; i++) {
+      int caller = i;
+      fs.add(pool.submit(() -> { go.await(); return call.call(caller); }));
+    }
+    List<T> out = new ArrayList<>();
+    for (var f : fs) out.add(f.get(10, TimeUnit.SECONDS));
+    pool.shutdown();
+    return out;
+  }
+
+  @Test void identicalCallsShareOneExecution() throws Exception {
+    var flight = new SingleFlight<String, Integer>();
+    AtomicInteger runs = new AtomicInteger();
+    List<Integer> got = burst(16, () -> flight.run("k", () -> { runs.incrementAndGet(); Thread.sleep(200); return 42; }));
+    assertTrue(got.stream().allMatch(v -> v == 42));
+    assertEquals(1, runs.get());
+    assertEquals(15.0 / 16, flight.dedupRatio(), 1e-9);
+
+    var failing = new SingleFlight<String, Integer>();
+    var ex = assertThrows(ExecutionException.class, () ->
+        burst(4, () -> failing.run("k", () -> { Thread.sleep(100); throw new IllegalStateException("HTTP 503"); })));
+    assertTrue(ex.getCause() instanceof IllegalStateException);
+  }
+
+  @Test void geocoderKeysOnNormalizedAddress() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    var g = new CoalescingGeocoder(a -> { runs.incrementAndGet(); Thread.sleep(200); return new Geocoder.Pt(1, 2); });
+    // half the callers use each spelling, all released together
+    burst(8, i -> g.geocode(i % 2 == 0 ? "Depot, Richmond VA" : "  depot,  richmond va"));
+    assertEquals(1, runs.get());
+  }
+
+  @Test void smallerPoiQueriesRideOnCoveringOnes() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    PoiSource slow = (lat, lon, r, limit) -> {
+      runs.incrementAndGet();
+      Thread.sleep(300);
+      return List.of(new Poi("Near", "fuel", 38.9001, -77.0), new Poi("Far", "cafe", 38.92, -77.0));
+    };
+    var pois = new CoalescingPoiSource(slow);
+    var big = CompletableFuture.supplyAsync(() -> {
+      try { return pois.findNearbyStops(38.9, -77.0, 5000, 5); } catch (Exception e) { throw new CompletionException(e); }
+    });
+    Thread.sleep(50); // let the wide query go first
+    List<List<Poi>> small = burst(6, () -> pois.findNearbyStops(38.9002, -77.0, 1000, 5));
+    assertEquals(2, big.get().size());
+    for (var l : small) { assertEquals(1, l.size()); assertEquals("Near", l.get(0).name()); }
+    assertEquals(1, runs.get());
+    assertEquals(6.0 / 7, pois.dedupRatio(), 1e-9);
+  }
+
+  @Test void poiLimitsAboveTheFetchLimitAreHonoured() throws Exception {
+    AtomicInteger runs = new AtomicInteger();
+    PoiSource many = (lat, lon, r, limit) -> {
+      runs.incrementAndGet();
+      Thread.sleep(200);
+      List<Poi> out = new ArrayList<>();
+      for (int i = 0; i < Math.min(limit, 500); i++) out.add(new Poi("P" + i, "fuel", lat + i * 1e-5, lon));
+      return out;
+    };
+    var pois = new CoalescingPoiSource(many);
+    assertEquals(200, pois.findNearbyStops(38.9, -77.0, 5000, 200).size());
+
+    // a small in-flight request must not serve a caller that wants more than it fetched
+    var small = CompletableFuture.supplyAsync(() -> {
+      try { return pois.findNearbyStops(38.9, -77.0, 5000, 5); } catch (Exception e) { throw new CompletionException(e); }
+    });
+    Thread.sleep(50);
+    var big = pois.findNearbyStops(38.9, -77.0, 1000, 300);
+    assertEquals(5, small.get().size());
+    assertEquals(300, big.size());
+    assertEquals(3, runs.get());
+  }
+}
@@ -0,0 +1,47 @@
+package app;
+
+import app.geo.Geodesy;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class GeodesyTest {
+  static double[][] track(int n, long seed) {
+    Random r = new Random(seed);
+    double[] lats = new double[n], lons = new double[n];
+    double lat = 38.9, lon = -77.0;
+    for (int i = 0; i < n; i++) {
+      lat += (r.nextDouble() - 0.3) * 0.01; lon += (r.nextDouble() - 0.5) * 0.01;
+      lats[i] = lat; lons[i] = lon;
+    }
+    return new double[][]{ lats, lons };
+  }
+
+  @Test void batchDistancesMatchPointwise() {
+    double[][] t = track(1003, 1);
+    double[] d = new double[1003];
+    Geodesy.distancesM(38.5, -77.2, t[0], t[1], d);
+    for (int i = 0; i < d.length; i++)
+      assertEquals(Geodesy.haversineM(38.5, -77.2, t[0][i], t[1][i]), d[i], 1e-6);
+  }
+
+  @Test void cumulativeLengthMatchesSegmentSum() {
+    double[][] t = track(517, 2);
+    double[] cum = new double[517];
+    Geodesy.cumulativeLengthM(t[0], t[1], cum);
+    double sum = 0;
+    for (int i = 1; i < cum.length; i++) {
+      sum += Geodesy.haversineM(t[0][i-1], t[1][i-1], t[0][i], t[1][i]);
+      assertEquals(sum, cum[i], 1e-6);
+    }
+  }
+
+  @Test void pointToPolylineUsesSegmentInterior() {
+    // east-west line along 39N; a point ~1.11 km north of its middle
+    double[] lats = new double[40], lons = new double[40];
+    for (int i = 0; i < 40; i++) { lats[i] = 39.0; lons[i] = -77.0 + i * 0.05; }
+    double d = Geodesy.distanceToPolylineM(39.01, -77.0 + 0.05 * 20.5, lats, lons);
+    assertEquals(1112, d, 5);
+  }
+}
@@ -0,0 +1,79 @@
+package app;
+
+import app.route.LegRouter;
+import app.route.OsrmClient.Route;
+import app.route.Router;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LegRouterTest {
+  /** Straight two-point legs, 100 m / 10 s each; counts upstream calls. */
+  static class FakeRouter implements Router {
+    int calls;
+    @Override public Route routeVia(List<double[]> w) {
+      calls++;
+      double[] a = w.get(0), b = w.get(w.size()-1);
+      return new Route(100, 10, new double[]{a[0], b[0]}, new double[]{a[1], b[1]}, new double[]{10});
+    }
+  }
+
+  static List<double[]> chain(double... lats) {
+    List<double[]> out = new ArrayList<>();
+    for (double lat : lats) out.add(new double[]{lat, -77.0});
+    return out;
+  }
+
+  @Test void splicesLegsIntoOneRoute() throws Exception {
+    var legs = new LegRouter(new FakeRouter());
+    Route r = legs.routeVia(chain(38.0, 38.1, 38.2, 38.3));
+    assertEquals(300, r.distanceM(), 1e-9);
+    assertEquals(30, r.durationS(), 1e-9);
+    assertEquals(4, r.coords().size());              // joints kept once
+    assertEquals(3, r.segmentDurationsS().length);
+    assertEquals(30, r.cumulativeSeconds()[3], 1e-9);
+  }
+
+  @Test void movingOneStopRefetchesOnlyAdjacentLegs() throws Exception {
+    var up = new FakeRouter();
+    var legs = new LegRouter(up);
+    legs.routeVia(chain(38.0, 38.1, 38.2, 38.3, 38.4, 38.5));
+    assertEquals(5, up.calls);
+    legs.routeVia(chain(38.0, 38.1, 38.25, 38.3, 38.4, 38.5));
+    assertEquals(7, up.calls);
+    assertEquals(7, legs.upstreamRequests());
+  }
+
+  @Test void cachedLegsReturnTheSameGeometry() throws Exception {
+    // 400-point legs with µ°-level wiggle, like real OSRM geometry (polyline6 full of backslashes)
+    Router detailed = w -> {
+      double[] a = w.get(0), b = w.get(w.size()-1);
+      int n = 400;
+      double[] lats = new double[n], lons = new double[n], seg = new double[n-1];
+      Random rnd = new Random(Double.hashCode(a[0]) * 31 + Double.hashCode(b[0]));
+      for (int i = 0; i < n; i++) {
+        double t = i / (n - 1.0);
+        lats[i] = Math.round((a[0] + (b[0] - a[0]) * t + (i > 0 && i < n-1 ? rnd.nextInt(801) - 400 : 0) / 1e6) * 1e6) / 1e6;
+        lons[i] = Math.round((a[1] + (b[1] - a[1]) * t + (i > 0 && i < n-1 ? rnd.nextInt(801) - 400 : 0) / 1e6) * 1e6) / 1e6;
+      }
+      Arrays.fill(seg, 0.5);
+      return new Route(10_000, 199.5, lats, lons, seg);
+    };
+    var chain = chain(38.0, 38.1, 38.2);
+    Route direct = LegRouter.splice(List.of(detailed.routeVia(chain.subList(0, 2)), detailed.routeVia(chain.subList(1, 3))));
+
+    var legs = new LegRouter(detailed);
+    Route first = legs.routeVia(chain);
+    Route again = legs.routeVia(chain); // every leg is a cache hit
+    assertEquals(2, legs.upstreamRequests());
+    for (Route r : List.of(first, again)) {
+      assertArrayEquals(direct.lats(), r.lats(), 1e-9);
+      assertArrayEquals(direct.lons(), r.lons(), 1e-9);
+    }
+    assertEquals(38.2, again.lats()[again.size() - 1], 1e-9);
+  }
+}
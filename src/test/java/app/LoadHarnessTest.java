@@ -0,0 +1,126 @@
+package app;
+
+import app.geo.CoalescingGeocoder;
+import app.geo.Geodesy;
+import app.geo.NominatimGeocoder;
+import app.osm.CoalescingPoiSource;
+import app.osm.OverpassClient;
+import app.route.CoalescingRouter;
+import app.route.LegRouter;
+import app.route.OsrmClient;
+import app.route.TripPlanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the real OSRM/Overpass/Nominatim clients and the full planning pipeline against
+ * {@link LocalUpstream}. Scale with -Dload.plans, -Dload.concurrency, -Dload.latencyMs,
+ * -Dload.jitterMs, -Dload.errorRate, -Dload.padBytes.
+ */
+public class LoadHarnessTest {
+  @Test void realClientsParseFixtures() throws Exception {
+    try (var up = new LocalUpstream()) {
+      var p = new NominatimGeocoder(up.nominatimUrl()).geocode("Charlotte, NC");
+      assertEquals(35.2272, p.lat(), 1e-3);
+
+      var r = new OsrmClient(up.osrmUrl()).route(38.9047, -77.0164, p.lat(), p.lon());
+      assertEquals(240, r.size());
+      assertEquals(25095, r.durationS(), 1e-6);
+      // the synthetic route must stay self-consistent with its geometry and the geocoder fixture
+      assertEquals(Geodesy.lengthM(r.lats(), r.lons()), r.distanceM(), 1.0);
+      assertEquals(p.lat(), r.lats()[r.size() - 1], 1e-6);
+      assertEquals(p.lon(), r.lons()[r.size() - 1], 1e-6);
+
+      var pois = new OverpassClient(up.overpassUrl()).findNearbyStops(37.62, -78.28, 2500, 2);
+      assertEquals(2, pois.size());
+
+      List<TripPlanner.Stop> streamed = new ArrayList<>();
+      var plan = new TripPlanner(new NominatimGeocoder(up.nominatimUrl()),
+          new LegRouter(new OsrmClient(up.osrmUrl())), new OverpassClient(up.overpassUrl()))
+          .plan(38.9047, -77.0164, "Charlotte, NC", streamed::add);
+      assertEquals(2, plan.stops().size(), "~7h trip → stops near 3h and 6h");
+      assertEquals(plan.stops(), streamed, "each stop is reported as it is picked");
+    }
+  }
+
+  @Test void concurrentPlanningReportsLatency() throws Exception {
+    int plans = Integer.getInteger("load.plans", 64);
+    int conc  = Integer.getInteger("load.concurrency", 16);
+    try (var up = new LocalUpstream()
+        .latency(Long.getLong("load.latencyMs", 5), Long.getLong("load.jitterMs", 5))
+        .errorRate(Double.parseDouble(System.getProperty("load.errorRate", "0")))
+        .padBytes(Integer.getInteger("load.padBytes", 0))) {
+
+      var geocoder = new NominatimGeocoder(up.nominatimUrl());
+      var osrm = new OsrmClient(up.osrmUrl());
+      var overpass = new OverpassClient(up.overpassUrl());
+
+      ExecutorService pool = Executors.newFixedThreadPool(conc);
+      List<Future<Long>> futures = new ArrayList<>(plans);
+      long t0 = System.nanoTime();
+      for (int i = 0; i < plans; i++) {
+        futures.add(pool.submit(() -> {
+          // a fresh leg cache per plan, so every plan really goes upstream
+          var planner = new TripPlanner(geocoder, new LegRouter(osrm), overpass);
+          long s = System.nanoTime();
+          planner.plan(38.9047, -77.0164, "Charlotte, NC");
+          return System.nanoTime() - s;
+        }));
+      }
+      List<Long> ok = new ArrayList<>(plans);
+      int failed = 0;
+      for (var f : futures) {
+        try { ok.add(f.get()); } catch (ExecutionException e) { failed++; }
+      }
+      double wallS = (System.nanoTime() - t0) / 1e9;
+      pool.shutdown();
+
+      long[] lat = ok.stream().mapToLong(Long::longValue).sorted().toArray();
+      System.out.printf("[LOAD] plans=%d concurrency=%d ok=%d failed=%d p50=%.1fms p99=%.1fms throughput=%.1f plans/s%n",
+          plans, conc, lat.length, failed, pct(lat, 0.50) / 1e6, pct(lat, 0.99) / 1e6, lat.length / wallS);
+      System.out.printf("[LOAD] upstream hits: osrm=%d overpass=%d nominatim=%d%n",
+          up.osrmHits.get(), up.overpassHits.get(), up.nominatimHits.get());
+
+      if (up.errorRate == 0) assertEquals(0, failed);
+      assertTrue(lat.length > 0);
+      assertTrue(pct(lat, 0.99) >= pct(lat, 0.50));
+    }
+  }
+
+  @Test void fleetBurstIsCoalesced() throws Exception {
+    int vehicles = Integer.getInteger("load.fleet", 24);
+    try (var up = new LocalUpstream().latency(Long.getLong("load.latencyMs", 50), 0)) {
+      // shared coalescing layer, fresh leg cache per vehicle (as separate planners would have)
+      var geocoder = new CoalescingGeocoder(new NominatimGeocoder(up.nominatimUrl()));
+      var router = new CoalescingRouter(new OsrmClient(up.osrmUrl()));
+      var pois = new CoalescingPoiSource(new OverpassClient(up.overpassUrl()));
+
+      ExecutorService pool = Executors.newFixedThreadPool(vehicles);
+      CyclicBarrier depot = new CyclicBarrier(vehicles);
+      List<Future<TripPlanner.Plan>> fs = new ArrayList<>();
+      for (int i = 0; i < vehicles; i++) {
+        fs.add(pool.submit(() -> {
+          depot.await();
+          return new TripPlanner(geocoder, new LegRouter(router), pois).plan(38.9047, -77.0164, "Charlotte, NC");
+        }));
+      }
+      for (var f : fs) assertEquals(2, f.get().stops().size());
+      pool.shutdown();
+
+      System.out.printf("[LOAD] fleet=%d dedup: geocode=%.2f route=%.2f poi=%.2f upstream hits: osrm=%d overpass=%d nominatim=%d%n",
+          vehicles, geocoder.stats().dedupRatio(), router.stats().dedupRatio(), pois.dedupRatio(),
+          up.osrmHits.get(), up.overpassHits.get(), up.nominatimHits.get());
+      assertTrue(up.osrmHits.get() < 4L * vehicles, "identical fleet requests were coalesced");
+    }
+  }
+
+  static long pct(long[] sorted, double q) {
+    if (sorted.length == 0) return 0;
+    int i = (int) Math.ceil(q * sorted.length) - 1;
+    return sorted[Math.max(0, Math.min(sorted.length - 1, i))];
+  }
+}
@@ -0,0 +1,97 @@
+package app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for OSRM, Overpass and Nominatim: replays the fixtures in
+ * src/test/resources/fixtures with configurable latency, jitter, error rate and payload padding.
+ * osrm-route.json is synthetic, not a captured response: a hand-built DC → Charlotte polyline6
+ * (240 points) whose distance matches its geometry and whose end point is the Nominatim result.
+ */
+final class LocalUpstream implements AutoCloseable {
+  private final HttpServer server;
+  private final ExecutorService pool;
+  private final byte[] osrm, overpass, nominatim;
+
+  volatile long latencyMs = 0, jitterMs = 0;
+  /** Fraction [0,1] of requests answered with HTTP 503. */
+  volatile double errorRate = 0;
+  /** Extra whitespace appended to every body, to model larger payloads. */
+  volatile int padBytes = 0;
+
+  final AtomicLong osrmHits = new AtomicLong(), overpassHits = new AtomicLong(), nominatimHits = new AtomicLong();
+
+  LocalUpstream() throws IOException {
+    osrm = fixture("osrm-route.json");
+    overpass = fixture("overpass-stops.json");
+    nominatim = fixture("nominatim-search.json");
+    server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+    pool = Executors.newCachedThreadPool(r -> { Thread t = new Thread(r, "local-upstream"); t.setDaemon(true); return t; });
+    server.setExecutor(pool);
+    server.createContext("/route/v1/driving/", ex -> reply(ex, osrm, osrmHits));
+    server.createContext("/api/interpreter", ex -> reply(ex, overpass, overpassHits));
+    server.createContext("/search", ex -> reply(ex, nominatim, nominatimHits));
+    server.start();
+  }
+
+  LocalUpstream latency(long ms, long jitter) { latencyMs = ms; jitterMs = jitter; return this; }
+  LocalUpstream errorRate(double rate) { errorRate = rate; return this; }
+  LocalUpstream padBytes(int n) { padBytes = n; return this; }
+
+  String baseUrl() { return "http://127.0.0.1:" + server.getAddress().getPort(); }
+  String osrmUrl() { return baseUrl(); }
+  String overpassUrl() { return baseUrl() + "/api/interpreter"; }
+  String nominatimUrl() { return baseUrl(); }
+
+  private void reply(HttpExchange ex, byte[] body, AtomicLong hits) throws IOException {
+    hits.incrementAndGet();
+    try (ex; InputStream in = ex.getRequestBody()) {
+      in.readAllBytes();
+      var rnd = ThreadLocalRandom.current();
+      long delay = latencyMs + (jitterMs > 0 ? rnd.nextLong(jitterMs + 1) : 0);
+      if (delay > 0) Thread.sleep(delay);
+      if (errorRate > 0 && rnd.nextDouble() < errorRate) {
+        ex.sendResponseHeaders(503, -1);
+        return;
+      }
+      int pad = padBytes;
+      ex.getResponseHeaders().set("Content-Type", "application/json");
+      ex.sendResponseHeaders(200, body.length + pad);
+      try (OutputStream out = ex.getResponseBody()) {
+        out.write(body);
+        if (pad > 0) {
+          byte[] sp = new byte[Math.min(pad, 8192)];
+          Arrays.fill(sp, (byte) ' ');
+          for (int left = pad; left > 0; left -= sp.length) out.write(sp, 0, Math.min(left, sp.length));
+        }
+      }
+    } catch (InterruptedException ie) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static byte[] fixture(String name) throws IOException {
+    try (InputStream in = LocalUpstream.class.getResourceAsStream("/fixtures/" + name)) {
+      if (in == null) throw new IOException("missing fixture " + name);
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8).trim().getBytes(StandardCharsets.UTF_8);
+    }
+  }
+
+  @Override public void close() {
+    server.stop(0);
+    pool.shutdownNow();
+  }
+}
@@ -1,7 +1,10 @@
 package app;
 
 import app.route.OsrmClient;
+import app.route.Polyline;
 import org.junit.jupiter.api.Test;
+
+import java.util.Random;
 import static org.junit.jupiter.api.Assertions.*;
 
 public class OsrmParseTest {
@@ -16,5 +19,57 @@ public class OsrmParseTest {
     assertEquals(38.9, r.coords().get(0)[0], 1e-6); // lat
     assertEquals(-77.0, r.coords().get(0)[1], 1e-6); // lon
   }
-}
 
+  @Test void decodesReferencePolyline() {
+    double[][] ll = Polyline.decode("_p~iF~ps|U_ulLnnqC_mqNvxq`@", 5);
+    assertEquals(3, ll[0].length);
+    assertEquals(38.5, ll[0][0], 1e-9);
+    assertEquals(-120.2, ll[1][0], 1e-9);
+    assertEquals(43.252, ll[0][2], 1e-9);
+    assertEquals(-126.453, ll[1][2], 1e-9);
+  }
+
+  @Test void parsesPolyline6Geometry() {
+    double[] lats = { 38.9, 38.910001, 38.95 }, lons = { -77.0, -77.010002, -77.1 };
+    String enc = Polyline.encode(lats, lons, Polyline.PRECISION6);
+    String escaped = enc.replace("\\", "\\\\"); // JSON escapes backslashes
+    String json = "{\"routes\":[{\"geometry\":\"" + escaped + "\",\"legs\":[{\"annotation\":{\"duration\":[3.5,4.5]}," +
+        "\"duration\":8,\"distance\":900}],\"duration\":8,\"distance\":900}]}";
+    var r = OsrmClient.parse(json);
+    assertEquals(3, r.size());
+    assertEquals(38.910001, r.lats()[1], 1e-9);
+    assertEquals(-77.010002, r.lons()[1], 1e-9);
+    assertEquals(8.0, r.cumulativeSeconds()[2], 1e-9);
+    assertEquals(enc, r.encodedGeometry());
+  }
+
+  @Test void roundTripsLongFineGrainedTrack() {
+    // random walk in µ° steps: the encoding is full of backslashes (value 29), which are plain data
+    Random rnd = new Random(27);
+    int n = 5000;
+    double[] lats = new double[n], lons = new double[n];
+    long lat = 38_904_700, lon = -77_016_400;
+    for (int i = 0; i < n; i++) {
+      lat += rnd.nextInt(2001) - 1000; lon += rnd.nextInt(2001) - 1000;
+      lats[i] = lat / 1e6; lons[i] = lon / 1e6;
+    }
+    String enc = Polyline.encode(lats, lons, Polyline.PRECISION6);
+    assertTrue(enc.indexOf('\\') >= 0, "track should exercise the backslash character");
+
+    double[][] ll = Polyline.decode(enc, Polyline.PRECISION6);
+    assertEquals(n, ll[0].length);
+    for (int i = 0; i < n; i++) {
+      assertEquals(lats[i], ll[0][i], 1e-9);
+      assertEquals(lons[i], ll[1][i], 1e-9);
+    }
+
+    // same geometry inside an OSRM body, where JSON escapes each backslash
+    double[] seg = new double[n - 1];
+    var r = OsrmClient.Route.fromEncoded(1000, 100, enc, seg);
+    assertEquals(lats[n - 1], r.lats()[n - 1], 1e-9);
+    String json = "{\"routes\":[{\"geometry\":\"" + enc.replace("\\", "\\\\") + "\",\"duration\":100,\"distance\":1000}]}";
+    var parsed = OsrmClient.parse(json);
+    assertEquals(n, parsed.size());
+    assertEquals(enc, parsed.encodedGeometry());
+  }
+}
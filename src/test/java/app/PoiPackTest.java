@@ -0,0 +1,80 @@
+package app;
+
+import app.db.Db;
+import app.osm.OverpassClient.Poi;
+import app.osm.PoiPack;
+import app.osm.PoiPackBuilder;
+import app.route.RouteService;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PoiPackTest {
+  @Test void answersLikeABruteForceScan() throws Exception {
+    Random r = new Random(7);
+    List<Poi> all = new ArrayList<>();
+    String[] kinds = { "fuel", "cafe", "restaurant", "rest_area" };
+    for (int i = 0; i < 20_000; i++)
+      all.add(new Poi("POI " + (i % 500), kinds[i % kinds.length], 37 + r.nextDouble() * 2, -79 + r.nextDouble() * 2));
+
+    Path file = Files.createTempFile("pois", ".mwpk");
+    try {
+      String json;
+      try (InputStream in = getClass().getResourceAsStream("/fixtures/overpass-stops.json")) {
+        json = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+      }
+      new PoiPackBuilder().addAll(all).addOverpassJson(json).write(file);
+
+      try (PoiPack pack = PoiPack.open(file)) {
+        assertEquals(20_004, pack.size());
+        var got = pack.findNearbyStops(37.62418, -78.28072, 20, 5);
+        assertEquals("Sheetz", got.get(0).name());
+        assertEquals("fuel", got.get(0).kind());
+
+        for (int q = 0; q < 50; q++) {
+          double lat = 37.2 + r.nextDouble() * 1.6, lon = -78.8 + r.nextDouble() * 1.6;
+          List<Poi> expect = all.stream()
+              .filter(p -> RouteService.distanceKm(lat, lon, p.lat(), p.lon()) * 1000 <= 5000)
+              .sorted(Comparator.comparingDouble(p -> RouteService.distanceKm(lat, lon, p.lat(), p.lon())))
+              .limit(5).toList();
+          List<Poi> actual = pack.findNearbyStops(lat, lon, 5000, 5);
+          assertEquals(expect.size(), actual.size());
+          for (int i = 0; i < expect.size(); i++) {
+            assertEquals(expect.get(i).name(), actual.get(i).name());
+            assertEquals(expect.get(i).lat(), actual.get(i).lat(), 1e-6);
+          }
+        }
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @Test void buildsFromDuckDbTable() throws Exception {
+    Path file = Files.createTempFile("pois-db", ".mwpk");
+    try (Connection c = Db.openFile("")) {
+      try (Statement s = c.createStatement()) {
+        s.execute("CREATE TABLE pois(name TEXT, kind TEXT, lat DOUBLE, lon DOUBLE)");
+        s.execute("INSERT INTO pois VALUES ('Wawa','fuel',38.90,-77.03), ('Blue Bottle','cafe',38.91,-77.02), (NULL,'parking',38.95,-77.10)");
+      }
+      new PoiPackBuilder().addFromDuckDb(c, "pois").write(file);
+      try (PoiPack pack = PoiPack.open(file)) {
+        var got = pack.findNearbyStops(38.905, -77.025, 3000, 5);
+        assertEquals(2, got.size());
+        assertEquals("Stop", pack.findNearbyStops(38.95, -77.10, 100, 1).get(0).name());
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+}
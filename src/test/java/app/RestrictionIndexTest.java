@@ -0,0 +1,141 @@
+package app;
+
+import app.db.Db;
+import app.osm.OverpassClient;
+import app.osm.RestrictionIndex;
+import app.route.OsrmClient.Route;
+import app.user.CarProfile;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RestrictionIndexTest {
+  private static final CarProfile TRUCK = new CarProfile(1, "Box truck", "Isuzu", "NPR", 2020, 4.0, 12_000.0);
+  private static final CarProfile CAR = new CarProfile(2, "Daily", "Honda", "Fit", 2019, 1.5, 1_200.0);
+  private static final CarProfile VAN = new CarProfile(3, "Camper", "Ford", "Transit", 2022, 3.2, 3_400.0);
+
+  /** Straight eastbound route along 38.9 N, one vertex every 0.001°. */
+  private static Route route() {
+    int n = 51;
+    double[] lats = new double[n], lons = new double[n], seg = new double[n - 1];
+    for (int i = 0; i < n; i++) { lats[i] = 38.9; lons[i] = -77.05 + i * 0.001; }
+    Arrays.fill(seg, 6.0);
+    return new Route(4330, 300, lats, lons, seg);
+  }
+
+  private static String fixture() throws Exception {
+    try (InputStream in = RestrictionIndexTest.class.getResourceAsStream("/fixtures/overpass-restrictions.json")) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  @Test void parsesTagValues() throws Exception {
+    assertEquals(3.8, RestrictionIndex.parseHeightM("3.8"), 1e-9);
+    assertEquals(3.5, RestrictionIndex.parseHeightM("3,5 m"), 1e-9);
+    assertEquals(3.81, RestrictionIndex.parseHeightM("12'6\""), 1e-9);
+    assertEquals(3.9624, RestrictionIndex.parseHeightM("13 ft"), 1e-9);
+    assertNull(RestrictionIndex.parseHeightM("none"));
+    assertEquals(7500, RestrictionIndex.parseWeightKg("7.5"), 1e-9);
+    assertEquals(3500, RestrictionIndex.parseWeightKg("3500 kg"), 1e-9);
+    assertEquals(12_000, RestrictionIndex.parseWeightKg("12 t"), 1e-9);
+    assertNull(RestrictionIndex.parseWeightKg("default"));
+
+    var ways = RestrictionIndex.parseWays(fixture());
+    assertEquals(4, ways.size(), "way with maxheight=none carries no restriction");
+    assertEquals(101, ways.get(0).wayId());
+    assertEquals(3, ways.get(0).lats().length);
+    assertEquals(3.048, ways.get(1).maxHeightM(), 1e-9);
+  }
+
+  @Test void flagsOnlyWaysTheRouteRunsAlong() throws Exception {
+    var ways = RestrictionIndex.parseWays(fixture());
+    var v = RestrictionIndex.check(route(), ways, TRUCK);
+    // 101 tunnel (height) and 103 weight limit lie on the route; 102 is a low bridge crossing it
+    // and 104 is a parallel service road 55 m away
+    assertEquals(List.of(103L, 101L), v.stream().map(RestrictionIndex.Violation::wayId).toList());
+    assertEquals("maxweight 7.5 t", v.get(0).reason());
+    assertEquals("maxheight 3.50 m", v.get(1).reason());
+    assertEquals(20, v.get(1).segment());
+
+    assertTrue(RestrictionIndex.check(route(), ways, CAR).isEmpty());
+    assertTrue(RestrictionIndex.check(route(), ways, VAN).isEmpty());
+  }
+
+  @Test void cachesCellsInDuckDb() throws Exception {
+    String json = fixture();
+    AtomicInteger queries = new AtomicInteger();
+    OverpassClient overpass = new OverpassClient("http://127.0.0.1:9/api/interpreter") {
+      @Override public String query(String q) {
+        queries.incrementAndGet();
+        assertTrue(q.contains("way[\"highway\"][\"maxheight\"]"));
+        return json;
+      }
+    };
+    try (Connection c = Db.openFile("")) {
+      Db.migrate(c);
+      var index = new RestrictionIndex(c, overpass);
+      assertEquals(2, index.validate(route(), TRUCK).size());
+      assertEquals(1, queries.get(), "all uncovered cells go out in one query");
+      assertEquals(0, index.ensureCovered(route()));
+      assertTrue(index.validate(route(), CAR).isEmpty());
+      assertEquals(2, index.validate(route(), TRUCK).size());
+      assertEquals(1, queries.get(), "second vehicle and second check come from the cache");
+    }
+  }
+
+  @Test void importedExtractServesTheCorridorOffline() throws Exception {
+    OverpassClient offline = new OverpassClient("http://127.0.0.1:9/api/interpreter") {
+      @Override public String query(String q) { throw new AssertionError("cells inside the extract need no fetch"); }
+    };
+    try (Connection c = Db.openFile("")) {
+      Db.migrate(c);
+      var index = new RestrictionIndex(c, offline);
+      assertEquals(4, index.importOverpassJson(fixture(), 38.8, -77.1, 39.0, -76.9));
+      var v = index.validate(route(), TRUCK);
+      assertEquals(List.of(103L, 101L), v.stream().map(RestrictionIndex.Violation::wayId).toList());
+    }
+  }
+
+  @Test void cachedWayGeometryRoundTripsExactly() throws Exception {
+    // one long way with µ°-level vertices, as Overpass returns them; its polyline6 is full of backslashes
+    Random rnd = new Random(37);
+    int n = 600;
+    double[] lats = new double[n], lons = new double[n];
+    long lat = 38_950_000, lon = -77_050_000;
+    StringBuilder geom = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      lat += rnd.nextInt(401) - 200; lon += rnd.nextInt(300);
+      lats[i] = lat / 1e6; lons[i] = lon / 1e6;
+      geom.append(i == 0 ? "" : ",").append("{\"lat\":").append(lats[i]).append(",\"lon\":").append(lons[i]).append('}');
+    }
+    String json = "{\"elements\":[{\"type\":\"way\",\"id\":777,\"geometry\":[" + geom
+        + "],\"tags\":{\"highway\":\"primary\",\"maxheight\":\"3.6\"}}]}";
+
+    OverpassClient offline = new OverpassClient("http://127.0.0.1:9/api/interpreter") {
+      @Override public String query(String q) { throw new AssertionError("no fetch expected"); }
+    };
+    try (Connection c = Db.openFile("")) {
+      Db.migrate(c);
+      var index = new RestrictionIndex(c, offline);
+      assertEquals(1, index.importOverpassJson(json, 38.8, -77.1, 39.1, -76.8));
+      var ways = index.load(RestrictionIndex.cellsAlong(lats, lons), TRUCK);
+      assertEquals(1, ways.size());
+      assertArrayEquals(lats, ways.get(0).lats(), 1e-9);
+      assertArrayEquals(lons, ways.get(0).lons(), 1e-9);
+
+      // a route driving the way end to end is flagged at its first segment
+      var r = new Route(0, 0, lats, lons, new double[n - 1]);
+      var v = index.validate(r, TRUCK);
+      assertEquals(1, v.size());
+      assertEquals(777, v.get(0).wayId());
+      assertEquals(0, v.get(0).segment());
+    }
+  }
+}
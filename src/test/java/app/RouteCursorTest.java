@@ -0,0 +1,51 @@
+package app;
+
+import app.route.OsrmClient.Route;
+import app.route.RouteCursor;
+import app.route.StopPlanner;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RouteCursorTest {
+  /** Due north along lon -77, 0.01° (~1.1 km) and 60 s per segment. */
+  static Route northbound(int n) {
+    double[] lats = new double[n], lons = new double[n], seg = new double[n-1];
+    for (int i = 0; i < n; i++) { lats[i] = 38.0 + i * 0.01; lons[i] = -77.0; }
+    Arrays.fill(seg, 60);
+    return new Route(0, 60.0 * (n-1), lats, lons, seg);
+  }
+
+  @Test void interpolatesInsideSegments() {
+    var c = new RouteCursor(northbound(11));
+    var p = c.atTime(90, new RouteCursor.Position());
+    assertEquals(1, p.segment);
+    assertEquals(38.015, p.lat, 1e-9);
+    assertEquals(510, p.remainingS, 1e-9);
+    assertEquals(0, p.headingDeg, 1e-6);
+
+    c.atDistance(c.totalMeters() / 2, p);
+    assertEquals(38.05, p.lat, 1e-6);
+    assertEquals(300, p.elapsedS, 1e-6);
+
+    c.atTime(1e9, p); // clamped to the end
+    assertEquals(38.10, p.lat, 1e-9);
+    assertEquals(0, p.remainingS, 1e-9);
+  }
+
+  @Test void rangeIterationAndStopTimes() {
+    var c = new RouteCursor(northbound(601)); // 10 h
+    int[] count = {0};
+    c.forEachInTime(120, 300, (i, lat, lon, s, m) -> count[0]++);
+    assertEquals(4, count[0]); // vertices at 120,180,240,300 s
+
+    double[] t = StopPlanner.planStopTimes(c, 3.0, 15.0);
+    assertEquals(3, t.length);
+    assertEquals(3 * 3600, t[0], 1e-9);
+
+    List<Integer> idx = StopPlanner.planStopsByTime(northbound(601).cumulativeSeconds(), 3.0, 15.0);
+    assertEquals(List.of(180, 360, 540), idx);
+  }
+}
@@ -0,0 +1,73 @@
+package app;
+
+import app.route.OsrmClient.Route;
+import app.route.TripPlanner.Plan;
+import app.route.TripPlanner.Stop;
+import app.session.SessionStore;
+import app.session.SessionStore.Session;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionStoreTest {
+  @Test void roundTripsPlanAndView() throws Exception {
+    Path dir = Files.createTempDirectory("myway-session");
+    try {
+      var store = SessionStore.beside(dir.resolve("myway.duckdb").toString());
+      assertEquals("myway.session", store.file().getFileName().toString());
+      assertNull(store.load());
+
+      Route r = new Route(1500, 120, new double[]{38.9, 38.91, 38.92}, new double[]{-77.0, -77.01, -77.02}, new double[]{50, 70});
+      Plan p = new Plan(38.92, -77.02, r, r, List.of(new Stop(38.91, -77.01, "Sheetz (fuel) ✓", 50)));
+      store.save(new Session(1234L, 38.91, -77.01, 11.5, 38.9, -77.0, p, List.of("~0.0h")));
+
+      Session s = store.load();
+      assertNotNull(s);
+      assertEquals(11.5, s.zoom(), 0);
+      assertEquals(38.9, s.startLat(), 0);
+      assertEquals(3, s.plan().route().size());
+      assertEquals(-77.01, s.plan().route().lons()[1], 1e-6);
+      assertEquals(120, s.plan().route().cumulativeSeconds()[2], 1e-4);
+      assertEquals("Sheetz (fuel) ✓", s.plan().stops().get(0).label());
+      assertEquals("~0.0h", s.timeLabels().get(0));
+
+      Files.write(store.file(), new byte[]{1, 2, 3});
+      assertNull(store.load(), "corrupt snapshot is ignored");
+    } finally {
+      try (var files = Files.list(dir)) { for (Path f : files.toList()) Files.delete(f); }
+      Files.delete(dir);
+    }
+  }
+
+  @Test void restoresDetailedRouteExactly() throws Exception {
+    // thousands of µ°-level vertices, like a real OSRM route
+    Random rnd = new Random(34);
+    int n = 4000;
+    double[] lats = new double[n], lons = new double[n], seg = new double[n - 1];
+    long lat = 38_904_700, lon = -77_016_400;
+    for (int i = 0; i < n; i++) {
+      lat -= rnd.nextInt(900); lon -= rnd.nextInt(900);
+      lats[i] = lat / 1e6; lons[i] = lon / 1e6;
+      if (i > 0) seg[i - 1] = 1.5;
+    }
+    Route r = new Route(250_000, 1.5 * (n - 1), lats, lons, seg);
+    Plan p = new Plan(lats[n - 1], lons[n - 1], r, r, List.of());
+
+    Path dir = Files.createTempDirectory("myway-session");
+    try {
+      var store = SessionStore.beside(dir.resolve("myway.duckdb").toString());
+      store.save(new Session(1L, lats[0], lons[0], 10, lats[0], lons[0], p, List.of()));
+      Session s = store.load();
+      assertNotNull(s, "snapshot with detailed geometry must restore");
+      assertArrayEquals(lats, s.plan().route().lats(), 1e-9);
+      assertArrayEquals(lons, s.plan().route().lons(), 1e-9);
+    } finally {
+      try (var files = Files.list(dir)) { for (Path f : files.toList()) Files.delete(f); }
+      Files.delete(dir);
+    }
+  }
+}
@@ -0,0 +1,91 @@
+package app;
+
+import app.route.LegRouter;
+import app.route.OsrmClient.Route;
+import app.route.Router;
+import app.route.TripPlanner;
+import app.track.Fix;
+import app.track.ReplaySource;
+import app.track.RouteTracker;
+import app.track.SegmentIndex;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TrackingTest {
+  /** ~100 m steps heading north-east with a gentle wiggle; 5 s per segment. */
+  static Route wiggly(int n) {
+    double[] lats = new double[n], lons = new double[n], seg = new double[n-1];
+    for (int i = 0; i < n; i++) { lats[i] = 30.0 + i * 0.0006; lons[i] = -90.0 + i * 0.0006 + 0.002 * Math.sin(i * 0.05); }
+    Arrays.fill(seg, 5);
+    return new Route(0, 5.0 * (n-1), lats, lons, seg);
+  }
+
+  @Test void snapsFastOnLargeRoutes() {
+    Route r = wiggly(100_000);
+    var idx = new SegmentIndex(r.lats(), r.lons());
+    var snap = new SegmentIndex.Snap();
+    int fixes = 20_000;
+    long t0 = System.nanoTime();
+    for (int k = 0; k < fixes; k++) {
+      int i = (int) ((long) k * 99_990 / fixes);
+      double lat = (r.lats()[i] + r.lats()[i+1]) / 2 + 0.0002, lon = (r.lons()[i] + r.lons()[i+1]) / 2;
+      assertTrue(idx.nearest(lat, lon, 75, snap));
+      assertTrue(Math.abs(snap.segment - i) <= 1, "snapped " + snap.segment + " for " + i);
+    }
+    double perFixUs = (System.nanoTime() - t0) / 1e3 / fixes;
+    assertTrue(perFixUs < 1000, "per-fix " + perFixUs + "us");
+  }
+
+  @Test void replayTracksProgressAndReplansWhenOffRoute() throws Exception {
+    // route 38.00 → 38.10 north along -77.0 with one stop at 38.05
+    int[] calls = {0};
+    Router up = w -> {
+      calls[0]++;
+      double[] a = w.get(0), b = w.get(w.size()-1);
+      int n = 21;
+      double[] lats = new double[n], lons = new double[n], seg = new double[n-1];
+      for (int i = 0; i < n; i++) { lats[i] = a[0] + (b[0]-a[0]) * i / (n-1); lons[i] = a[1] + (b[1]-a[1]) * i / (n-1); }
+      Arrays.fill(seg, 30);
+      return new Route(1000, 600, lats, lons, seg);
+    };
+    var legs = new LegRouter(up);
+    var stop = new TripPlanner.Stop(38.05, -77.0, "Fuel", 600);
+    double[] s = {38.0, -77.0}, sp = {38.05, -77.0}, d = {38.10, -77.0};
+    var plan = new TripPlanner.Plan(38.10, -77.0, null, legs.routeVia(List.of(s, sp, d)), List.of(stop));
+    assertEquals(2, calls[0]);
+
+    List<RouteTracker.Progress> progress = new ArrayList<>();
+    List<Fix> offRoute = new ArrayList<>();
+    int[] passedAtOff = {-1};
+    var tracker = new RouteTracker(new RouteTracker.Listener() {
+      @Override public void onProgress(RouteTracker.Progress p) { progress.add(p); }
+      @Override public void onOffRoute(Fix f, int passed) { offRoute.add(f); passedAtOff[0] = passed; }
+    });
+    tracker.setRoute(plan.route(), plan.stopPoints());
+
+    Path csv = Files.createTempFile("track", ".csv");
+    try {
+      StringBuilder sb = new StringBuilder("lat,lon,time\n");
+      for (int i = 0; i <= 6; i++) sb.append(38.0 + i * 0.01).append(",-77.0001,").append(i * 1000).append('\n');
+      for (int i = 1; i <= 4; i++) sb.append("38.06,").append(-77.0 + i * 0.01).append(',').append(6000 + i * 1000).append('\n');
+      Files.writeString(csv, sb.toString());
+      try (var src = ReplaySource.open(csv, 0)) { tracker.follow(src); }
+    } finally { Files.deleteIfExists(csv); }
+
+    assertEquals(7, progress.size());         // detour fixes are ~870 m off and never snap
+    for (int i = 1; i < 7; i++) assertTrue(progress.get(i).distanceM() > progress.get(i-1).distanceM());
+    assertTrue(progress.get(2).stopEtaS()[0] > 0);
+    assertEquals(1, offRoute.size());
+    assertEquals(1, passedAtOff[0]);
+
+    var next = new TripPlanner(null, legs, null).replanFrom(plan, offRoute.get(0).lat(), offRoute.get(0).lon(), passedAtOff[0]);
+    assertEquals(3, calls[0]);                // only current → dest was new
+    assertTrue(next.stops().isEmpty());
+  }
+}